@@ -70,6 +70,18 @@ public interface InputProcessor {
 
     void finish(String out);
 
+    /**
+     * Run the task with exclusive access to the input processor, no input is processed
+     * while it is running. Used when the buffer is updated from another thread,
+     * eg. when asynchronous completions are done.
+     * The task is not run if the input processor is finished.
+     *
+     * @param task task
+     */
+    default void execute(Runnable task) {
+        task.run();
+    }
+
     /**
      * @return current flags
      */
@@ -21,6 +21,7 @@ package org.aesh.readline;
 
 import org.aesh.readline.terminal.formatting.TerminalString;
 import org.aesh.readline.util.Parser;
+import org.aesh.readline.terminal.formatting.StyledText;
 import org.aesh.readline.terminal.formatting.TerminalCharacter;
 
 import java.util.Arrays;
@@ -111,19 +112,11 @@ public class Prompt {
     }
 
     private void generateOutString(List<TerminalCharacter> chars) {
-        StringBuilder promptBuilder = new StringBuilder();
-        StringBuilder builder = new StringBuilder();
-        TerminalCharacter prev = null;
-        for(TerminalCharacter c : chars) {
-            if(prev == null)
-                builder.append(c.toString());
-            else
-                builder.append(c.toString(prev));
-            prev = c;
-            promptBuilder.append(c.getCharacter());
-        }
-        ansiString = Parser.toCodePoints(builder.toString());
-        this.prompt = Parser.toCodePoints(promptBuilder.toString());
+        StyledText text = new StyledText(chars.size());
+        for(TerminalCharacter c : chars)
+            text.append(c);
+        ansiString = text.render();
+        this.prompt = text.getCodePoints();
     }
 
     public Character getMask() {
@@ -64,6 +64,9 @@ public class Readline {
     private CompletionHandler completionHandler;
     private EditMode editMode;
     private History history;
+    //the connection left in raw mode by ReadlineFlag.KEEP_RAW_MODE, and the attributes to restore
+    private Connection rawModeConnection;
+    private Attributes rawModeAttributes;
 
     public Readline() {
         this(EditModeBuilder.builder().create());
@@ -209,24 +212,53 @@ public class Readline {
 
         @Override
         public void finish(String s) {
+            completionHandler.cancelCompletion();
             conn.setStdinHandler(prevReadHandler);
             conn.setSizeHandler(prevSizeHandler);
             conn.setSignalHandler(prevSignalHandler);
             synchronized (Readline.this) {
                 inputProcessor = null;
             }
-            //revert back to the old attributes
-            conn.setAttributes(attributes);
+            //revert back to the old attributes, unless the next readline will enter raw mode again
+            if (flags.containsKey(ReadlineFlag.KEEP_RAW_MODE)) {
+                synchronized (Readline.this) {
+                    rawModeConnection = conn;
+                    rawModeAttributes = attributes;
+                }
+            }
+            else
+                conn.setAttributes(attributes);
 
             //call requestHandler with the output
             requestHandler.accept(s);
         }
 
+        /**
+         * A connection left in raw mode by the previous readline is already in raw mode,
+         * entering it again do not change the attributes.
+         *
+         * @return the attributes to restore when the line is read
+         */
+        private Attributes enterRawMode() {
+            synchronized (Readline.this) {
+                if (rawModeConnection != null && rawModeConnection != conn)
+                    rawModeConnection.setAttributes(rawModeAttributes);
+                Attributes previous = conn.enterRawMode();
+                if (rawModeConnection == conn)
+                    previous = rawModeAttributes;
+                rawModeConnection = null;
+                rawModeAttributes = null;
+                return previous;
+            }
+        }
+
         /**
          * Parse the event given
          * @param event event
          */
         private void parse(KeyAction event) {
+            //a new key press make the running completions obsolete
+            completionHandler.cancelCompletion();
             Action action = editMode.parse(event);
             if (action != null) {
                 synchronized (Readline.this) {
@@ -311,7 +343,7 @@ public class Readline {
             conn.setSizeHandler(this::resize);
 
             //setting attributes to previous values
-            attributes = conn.enterRawMode();
+            attributes = enterRawMode();
 
             //last, display prompt
             consoleBuffer.drawLine();
@@ -336,6 +368,14 @@ public class Readline {
                 inputProcessor.consoleBuffer.setSize(size);
         }
 
+        @Override
+        public void execute(Runnable task) {
+            synchronized (Readline.this) {
+                if(inputProcessor == this)
+                    task.run();
+            }
+        }
+
         @Override
         public String returnValue() {
             return returnValue;
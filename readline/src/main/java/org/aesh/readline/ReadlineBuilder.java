@@ -28,6 +28,7 @@ import org.aesh.readline.history.History;
 import org.aesh.readline.history.InMemoryHistory;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -41,6 +42,9 @@ public class ReadlineBuilder {
     private int historySize = 50;
     private String historyFile;
     private boolean enableHistory = true;
+    private boolean historyEraseDuplicates = false;
+    private boolean asyncCompletion = false;
+    private long completionTimeout = -1;
 
     public static ReadlineBuilder builder() {
         return new ReadlineBuilder();
@@ -70,6 +74,10 @@ public class ReadlineBuilder {
         return apply(c -> c.historySize = historySize);
     }
 
+    public ReadlineBuilder historyEraseDuplicates(boolean historyEraseDuplicates) {
+        return apply(c -> c.historyEraseDuplicates = historyEraseDuplicates);
+    }
+
      public ReadlineBuilder historyFile(String historyFile) {
          return apply(c -> c.historyFile = historyFile);
     }
@@ -78,6 +86,14 @@ public class ReadlineBuilder {
         return apply(c -> c.completionHandler = completionHandler);
     }
 
+    public ReadlineBuilder asyncCompletion(boolean asyncCompletion) {
+        return apply(c -> c.asyncCompletion = asyncCompletion);
+    }
+
+    public ReadlineBuilder completionTimeout(long timeout, TimeUnit unit) {
+        return apply(c -> c.completionTimeout = unit.toMillis(timeout));
+    }
+
     public Readline build() {
         if(editMode == null)
             editMode = EditModeBuilder.builder().create();
@@ -85,13 +101,20 @@ public class ReadlineBuilder {
             history = null;
         }
         else if(history == null) {
+            InMemoryHistory inMemoryHistory;
             if(historyFile == null || !new File(historyFile).isFile())
-                history = new InMemoryHistory(historySize);
+                inMemoryHistory = new InMemoryHistory(historySize);
             else
-                history = new FileHistory(new File(historyFile), historySize);
+                inMemoryHistory = new FileHistory(new File(historyFile), historySize);
+            inMemoryHistory.setEraseDuplicates(historyEraseDuplicates);
+            history = inMemoryHistory;
         }
         if(completionHandler == null)
             completionHandler = new SimpleCompletionHandler();
+        if(asyncCompletion)
+            completionHandler.setAsyncCompletion(true);
+        if(completionTimeout > -1)
+            completionHandler.setCompletionTimeout(completionTimeout, TimeUnit.MILLISECONDS);
 
        return new Readline(editMode, history, completionHandler);
     }
@@ -36,6 +36,15 @@ public enum ReadlineFlag {
     /**
      * Do not discard lines starting with '#'
      */
-    NO_COMMENT_DISCARD
+    NO_COMMENT_DISCARD,
+
+    /**
+     * Leave the terminal in raw mode when the line is read, so the next readline on the same
+     * connection do not have to change the terminal attributes (which start a stty process
+     * for each change on some terminals).
+     * The attributes from before the raw mode are restored when a readline without this flag
+     * finish, TerminalConnection also restore its initial attributes when it is closed.
+     */
+    KEEP_RAW_MODE
 
 }
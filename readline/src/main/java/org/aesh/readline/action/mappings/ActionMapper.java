@@ -107,9 +107,9 @@ public class ActionMapper {
         else if(function.equals("forward-word"))
             return new MoveForwardWord();
         else if(function.equals("history-search-backward"))
-            return new NullAction(); // TODO: need to add a proper Operation
+            return new HistorySearchBackward();
         else if(function.equals("history-search-forward"))
-            return new NullAction(); // TODO: need to add a proper Operation
+            return new HistorySearchForward();
         else if(function.equals("insert-comment"))
             return new NullAction(); // TODO: need to add a proper Operation
         else if(function.equals("insert-completions"))
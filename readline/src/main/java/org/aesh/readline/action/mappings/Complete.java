@@ -32,7 +32,7 @@ import org.aesh.readline.InputProcessor;
  */
 public class Complete implements ActionEvent {
 
-    private boolean askForCompletion = false;
+    private CompletionHandler completionHandler;
     private KeyAction key;
 
     @Override
@@ -42,14 +42,22 @@ public class Complete implements ActionEvent {
 
     @Override
     public void accept(InputProcessor inputProcessor) {
-        if(askForCompletion) {
+        if(displayingCompletions()) {
+            if(key != null && Key.SPACE.equalTo(key.buffer().array()))
+                completionHandler.displayMoreCompletions(inputProcessor, 0);
+            else if(key != null &&
+                    (Key.ENTER.equalTo(key.buffer().array()) || Key.CTRL_M.equalTo(key.buffer().array())))
+                completionHandler.displayMoreCompletions(inputProcessor, 1);
+            else
+                completionHandler.stopDisplayingCompletions(inputProcessor);
+            key = null;
+        }
+        else if(askForCompletion()) {
             if(key == Key.y) {
-                askForCompletion = false;
                 key = null;
                 inputProcessor.buffer().completer().complete(inputProcessor);
             }
             else if(key == Key.n){
-                askForCompletion = false;
                 key = null;
                 inputProcessor.buffer().completer().setCompletionStatus(CompletionHandler.CompletionStatus.COMPLETE);
                 inputProcessor.buffer().undoManager().clear();
@@ -58,19 +66,32 @@ public class Complete implements ActionEvent {
             }
         }
         else {
-            if(inputProcessor.buffer().completer() != null) {
-                inputProcessor.buffer().completer().complete( inputProcessor);
-                if(inputProcessor.buffer().completer().completionStatus() ==
-                        CompletionHandler.CompletionStatus.ASKING_FOR_COMPLETIONS) {
-                    askForCompletion = true;
-                }
-            }
+            completionHandler = inputProcessor.buffer().completer();
+            if(completionHandler != null)
+                completionHandler.complete(inputProcessor);
         }
     }
 
+    /**
+     * The status is read from the completion handler since asynchronous completions
+     * might ask after this action is done.
+     */
+    private boolean askForCompletion() {
+        return completionHandler != null &&
+                completionHandler.completionStatus() == CompletionHandler.CompletionStatus.ASKING_FOR_COMPLETIONS;
+    }
+
+    private boolean displayingCompletions() {
+        return completionHandler != null &&
+                completionHandler.completionStatus() == CompletionHandler.CompletionStatus.DISPLAYING_COMPLETIONS;
+    }
+
     @Override
     public void input(Action action, KeyAction key) {
-        if(askForCompletion) {
+        if(displayingCompletions()) {
+            this.key = key;
+        }
+        else if(askForCompletion()) {
             if(Key.isPrintable(key.buffer())) {
                 if(Key.y.equalTo(key.buffer().array())) {
                     this.key = Key.y;
@@ -84,7 +105,7 @@ public class Complete implements ActionEvent {
 
     @Override
     public boolean keepFocus() {
-        return askForCompletion;
+        return askForCompletion() || displayingCompletions();
     }
 
 }
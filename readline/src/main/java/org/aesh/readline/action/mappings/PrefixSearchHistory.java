@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.action.mappings;
+
+import org.aesh.readline.InputProcessor;
+import org.aesh.readline.action.Action;
+import org.aesh.readline.history.History;
+import org.aesh.readline.history.SearchDirection;
+import org.aesh.readline.util.Parser;
+
+import java.util.Arrays;
+
+/**
+ * Move through the history entries that start with the text between the
+ * beginning of the line and the cursor. The cursor stays at the same position,
+ * so the prefix is kept when the action is repeated.
+ * The line that was edited when the search started is restored when a forward
+ * search move past the newest match.
+ */
+abstract class PrefixSearchHistory implements Action {
+
+    private final SearchDirection direction;
+
+    PrefixSearchHistory(SearchDirection direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public void accept(InputProcessor inputProcessor) {
+        History entries = inputProcessor.buffer().history();
+        int[] line = inputProcessor.buffer().buffer().multiLine();
+        int cursor = inputProcessor.buffer().buffer().multiCursor();
+        int[] prefix = Arrays.copyOf(line, cursor);
+        boolean atEnd = entries.isFetchAtEnd();
+        if(atEnd && direction == SearchDirection.REVERSE)
+            entries.setCurrent(line);
+        int[] history = entries.searchPrefix(prefix, direction);
+        //the forward search is past the newest match, back to the line the search started from
+        if(history == null && !atEnd && entries.isFetchAtEnd()) {
+            int[] current = entries.getCurrent();
+            if(current != null && Parser.arrayStartsWith(current, prefix))
+                history = current;
+        }
+        if(history != null) {
+            inputProcessor.buffer().replace(history);
+            inputProcessor.buffer().moveCursor(prefix.length - history.length);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One asynchronous completion request.
+ *
+ * Each {@link Completion} is run as a separate task on the executor. The result is delivered once,
+ * either when all the tasks are done or when the deadline is reached. Tasks that have not finished
+ * by then are cancelled (interrupted) and their operations are dropped. The result have the same
+ * order as the operations, with null for the operations that are dropped.
+ * If the request is cancelled before that, no result is delivered.
+ */
+class AsyncCompletion<C extends CompleteOperation> {
+
+    private final List<Task> tasks;
+    private final AtomicInteger remaining;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final Consumer<List<C>> resultHandler;
+    private volatile ScheduledFuture<?> deadline;
+
+    AsyncCompletion(List<Completion> completions, List<C> operations, Consumer<List<C>> resultHandler) {
+        this.resultHandler = resultHandler;
+        tasks = new ArrayList<>(completions.size());
+        for(int i = 0; i < completions.size(); i++)
+            tasks.add(new Task(completions.get(i), operations.get(i)));
+        remaining = new AtomicInteger(tasks.size());
+    }
+
+    void start(Executor executor, long timeout) {
+        deadline = Timer.TIMER.schedule(this::finish, timeout, TimeUnit.MILLISECONDS);
+        for(Task task : tasks) {
+            try {
+                executor.execute(task);
+            }
+            catch(RejectedExecutionException e) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Cancel the running tasks, the result will not be delivered.
+     */
+    void cancel() {
+        if(done.compareAndSet(false, true))
+            stop();
+    }
+
+    private void finish() {
+        if(done.compareAndSet(false, true)) {
+            stop();
+            List<C> result = new ArrayList<>(tasks.size());
+            for(Task task : tasks)
+                result.add(task.completed());
+            resultHandler.accept(result);
+        }
+    }
+
+    private void stop() {
+        if(deadline != null)
+            deadline.cancel(false);
+        for(Task task : tasks)
+            task.cancel(true);
+    }
+
+    /**
+     * @return an executor that use virtual threads if they are available, if not a cached
+     *         thread pool with daemon threads
+     */
+    static Executor defaultExecutor() {
+        return DefaultExecutor.EXECUTOR;
+    }
+
+    private final class Task extends FutureTask<C> {
+
+        private Task(Completion completion, C co) {
+            super(() -> {
+                completion.complete(co);
+                return co;
+            });
+        }
+
+        /**
+         * @return the operation, or null if the task is cancelled or failed
+         */
+        private C completed() {
+            if(isDone() && !isCancelled()) {
+                try {
+                    return get();
+                }
+                catch(ExecutionException | InterruptedException ignored) {
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            if(remaining.decrementAndGet() == 0)
+                finish();
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Timer {
+        private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+        private static ScheduledThreadPoolExecutor createTimer() {
+            ScheduledThreadPoolExecutor timer =
+                    new ScheduledThreadPoolExecutor(1, daemonFactory("aesh-completion-timer"));
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+
+    private static final class DefaultExecutor {
+        private static final Executor EXECUTOR = createExecutor();
+
+        private static Executor createExecutor() {
+            try {
+                //only available on jdk 21+
+                Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (Executor) virtual.invoke(null);
+            }
+            catch(ReflectiveOperationException | RuntimeException e) {
+                return Executors.newCachedThreadPool(daemonFactory("aesh-completion"));
+            }
+        }
+    }
+}
@@ -96,4 +96,41 @@ public interface CompleteOperation {
     boolean doIgnoreNonEscapedSpace();
 
     void setIgnoreNonEscapedSpace(boolean ignoreNonEscapedSpace);
+
+    /**
+     * A completion with a huge number of candidates can add a sample of the candidates
+     * and specify the total number of candidates here.
+     * Implementations that do not keep track of the total ignore it, the sample is then
+     * handled as all the candidates.
+     *
+     * @param total total number of candidates
+     */
+    default void setTotalCompletionCandidates(int total) {
+    }
+
+    /**
+     * @return total number of candidates, by default the number of candidates added
+     */
+    default int getTotalCompletionCandidates() {
+        return getCompletionCandidates().size();
+    }
+
+    /**
+     * If the completion handler cache the completion results, the result is reused
+     * while the user continue to type the same word.
+     * Completions where the candidates depend on more than the buffer should set this to false.
+     * Implementations that do not keep track of the flag ignore it, their results are never cached.
+     *
+     * @param cacheable cacheable
+     */
+    default void setCacheable(boolean cacheable) {
+    }
+
+    /**
+     * @return true if the result can be cached, false by default so only implementations
+     *         that keep track of {@link #setCacheable(boolean)} are cached
+     */
+    default boolean isCacheable() {
+        return false;
+    }
 }
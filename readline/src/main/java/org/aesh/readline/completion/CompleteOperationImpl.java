@@ -43,6 +43,8 @@ public class CompleteOperationImpl implements CompleteOperation {
     private char separator = ' ';
     private boolean appendSeparator = true;
     private boolean ignoreOffset = false;
+    private boolean cacheable = true;
+    private int totalCandidates = -1;
 
     public CompleteOperationImpl(String buffer, int cursor) {
         setCursor(cursor);
@@ -283,6 +285,26 @@ public class CompleteOperationImpl implements CompleteOperation {
         this.ignoreNonEscapedSpace = ignoreNonEscapedSpace;
     }
 
+    @Override
+    public void setTotalCompletionCandidates(int total) {
+        this.totalCandidates = total;
+    }
+
+    @Override
+    public int getTotalCompletionCandidates() {
+        return Math.max(totalCandidates, completionCandidates.size());
+    }
+
+    @Override
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
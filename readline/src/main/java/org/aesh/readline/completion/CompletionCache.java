@@ -0,0 +1,203 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.terminal.formatting.TerminalString;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of completion results, used by {@link CompletionHandler} when enabled.
+ *
+ * The results are stored pr completion, keyed by the text in front of the word that is completed.
+ * When the user have typed more characters of the same word, the cached candidates are filtered
+ * instead of running the completion again, with the completion matcher of the handler if it is set. That is only correct for completions where the candidates
+ * for a longer word is a subset of the candidates for a shorter word, which is the case for most
+ * completions, those that are not should mark their result with {@link CompleteOperation#setCacheable(boolean)}.
+ * Results where the offset or starts with is ignored, and results that only have a sample of the
+ * candidates, are never cached.
+ */
+class CompletionCache {
+
+    private final long timeToLive;
+    private final Map<Key, Entry> entries;
+
+    /**
+     * @param maxEntries max number of cached results, the least recently used are removed
+     * @param timeToLive max age of a result in milliseconds
+     */
+    CompletionCache(int maxEntries, long timeToLive) {
+        this.timeToLive = timeToLive;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Fill the operation with the cached result of the completion, if any.
+     *
+     * @param matcher used to filter the candidates for a longer word, null to keep those
+     *                that start with the word
+     * @return true if the cache had a result for the operation
+     */
+    synchronized boolean restore(Completion completion, CompleteOperation co, CompletionMatcher matcher) {
+        String buffer = co.getBuffer();
+        if(buffer == null || co.getCursor() != buffer.length())
+            return false;
+        int wordStart = wordStart(buffer);
+        Key key = new Key(completion, buffer.substring(0, wordStart));
+        Entry entry = entries.get(key);
+        if(entry == null)
+            return false;
+        if(System.currentTimeMillis() - entry.created > timeToLive) {
+            entries.remove(key);
+            return false;
+        }
+        String word = buffer.substring(wordStart);
+        if(!word.startsWith(entry.word))
+            return false;
+        if(word.length() > entry.word.length()) {
+            entry = entry.narrow(word, buffer.substring(entry.offset), matcher);
+            entries.put(key, entry);
+        }
+        entry.restore(co);
+        return true;
+    }
+
+    /**
+     * Store the result of the completion, must be called before the candidates are formatted.
+     */
+    synchronized void store(Completion completion, CompleteOperation co) {
+        String buffer = co.getBuffer();
+        if(buffer == null || co.getCursor() != buffer.length() || !co.isCacheable() ||
+                co.doIgnoreOffset() || co.isIgnoreStartsWith() || co.getCompletionCandidates() == null ||
+                co.getTotalCompletionCandidates() > co.getCompletionCandidates().size())
+            return;
+        int wordStart = wordStart(buffer);
+        //the candidates can only be filtered if they include the whole word
+        if(co.getOffset() < 0 || co.getOffset() > wordStart)
+            return;
+        entries.put(new Key(completion, buffer.substring(0, wordStart)),
+                new Entry(buffer.substring(wordStart), co, System.currentTimeMillis()));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return index after the last non escaped space
+     */
+    private static int wordStart(String buffer) {
+        int start = 0;
+        for(int i = 0; i < buffer.length(); i++)
+            if(buffer.charAt(i) == ' ' && (i == 0 || buffer.charAt(i - 1) != '\\'))
+                start = i + 1;
+        return start;
+    }
+
+    private static final class Key {
+        private final Completion completion;
+        private final String context;
+
+        private Key(Completion completion, String context) {
+            this.completion = completion;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return completion == key.completion && context.equals(key.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(completion) + context.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final String word;
+        private final long created;
+        private final int offset;
+        private final char separator;
+        private final boolean appendSeparator;
+        private final boolean ignoreNonEscapedSpace;
+        private final List<TerminalString> candidates;
+
+        private Entry(String word, CompleteOperation co, long created) {
+            this.word = word;
+            this.created = created;
+            offset = co.getOffset();
+            separator = co.getSeparator();
+            appendSeparator = co.hasAppendSeparator();
+            ignoreNonEscapedSpace = co.doIgnoreNonEscapedSpace();
+            //the candidates are modified when they are formatted, keep a copy
+            candidates = new ArrayList<>(co.getCompletionCandidates().size());
+            for(TerminalString candidate : co.getCompletionCandidates())
+                candidates.add(candidate.cloneRenderingAttributes(candidate.getCharacters()));
+        }
+
+        private Entry(Entry entry, String word, List<TerminalString> candidates) {
+            this.word = word;
+            this.created = entry.created;
+            offset = entry.offset;
+            separator = entry.separator;
+            appendSeparator = entry.appendSeparator;
+            ignoreNonEscapedSpace = entry.ignoreNonEscapedSpace;
+            this.candidates = candidates;
+        }
+
+        /**
+         * @param word the longer word
+         * @param completed the text from offset to the cursor, the candidates must start with it
+         *                  or be accepted by the matcher
+         */
+        private Entry narrow(String word, String completed, CompletionMatcher matcher) {
+            List<TerminalString> narrowed = new ArrayList<>();
+            for(TerminalString candidate : candidates) {
+                if(matcher == null ? candidate.getCharacters().startsWith(completed) :
+                        matcher.score(completed, candidate.getCharacters()) != CompletionMatcher.NO_MATCH)
+                    narrowed.add(candidate);
+            }
+            return new Entry(this, word, narrowed);
+        }
+
+        private void restore(CompleteOperation co) {
+            co.setOffset(offset);
+            co.setSeparator(separator);
+            co.doAppendSeparator(appendSeparator);
+            co.setIgnoreNonEscapedSpace(ignoreNonEscapedSpace);
+            for(TerminalString candidate : candidates)
+                co.addCompletionCandidate(candidate.cloneRenderingAttributes(candidate.getCharacters()));
+        }
+    }
+}
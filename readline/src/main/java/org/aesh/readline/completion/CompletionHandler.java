@@ -23,12 +23,17 @@ import org.aesh.readline.Buffer;
 import org.aesh.readline.InputProcessor;
 import org.aesh.readline.action.mappings.ActionMapper;
 import org.aesh.readline.terminal.formatting.TerminalString;
+import org.aesh.terminal.utils.ANSI;
 import org.aesh.terminal.utils.Config;
 import org.aesh.readline.util.Parser;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 /**
@@ -36,10 +41,22 @@ import java.util.function.Function;
  */
 public abstract class CompletionHandler<C extends CompleteOperation> {
 
+    private static final String MORE = "--More--";
+
     private CompletionStatus status = CompletionStatus.COMPLETE;
     private int displayCompletionSize = 100;
     private final List<Completion> completionList;
     private Function<Buffer, C> aliasHandler;
+    private volatile Executor completionExecutor;
+    private long completionTimeout = 1000;
+    private final AtomicReference<AsyncCompletion<C>> pendingCompletion = new AtomicReference<>();
+    private volatile CompletionCache completionCache;
+    private boolean pagedDisplay = false;
+    private int displayLimit = -1;
+    private CompletionMatcher completionMatcher;
+    // reused for the formatted completions
+    private final StringBuilder displayBuffer = new StringBuilder();
+    private CompletionPager pager;
 
     public CompletionHandler() {
         completionList = new ArrayList<>();
@@ -82,6 +99,134 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
             this.completionList.addAll(completions);
     }
 
+    /**
+     * If async, the completions are run in parallel on a separate executor (using virtual threads
+     * if they are available) so the input is not blocked while they run.
+     *
+     * @param async run completions asynchronously
+     */
+    public void setAsyncCompletion(boolean async) {
+        completionExecutor = async ? AsyncCompletion.defaultExecutor() : null;
+    }
+
+    /**
+     * Run the completions in parallel on the given executor.
+     * The result is displayed when all completions are done, or when the completion timeout is reached.
+     * Completions that are not done by then are cancelled and their candidates are ignored.
+     * A new key press cancel the completions that are still running.
+     *
+     * @param executor executor, if null the completions are run synchronously on the input thread
+     */
+    public void setCompletionExecutor(Executor executor) {
+        completionExecutor = executor;
+    }
+
+    public boolean isAsyncCompletion() {
+        return completionExecutor != null;
+    }
+
+    /**
+     * @param timeout max time to wait for asynchronous completions
+     * @param unit time unit
+     */
+    public void setCompletionTimeout(long timeout, TimeUnit unit) {
+        completionTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * @return max time to wait for asynchronous completions, in milliseconds
+     */
+    public long getCompletionTimeout() {
+        return completionTimeout;
+    }
+
+    /**
+     * Cancel the asynchronous completions that are still running, their result will not be displayed.
+     */
+    public void cancelCompletion() {
+        AsyncCompletion<C> pending = pendingCompletion.getAndSet(null);
+        if(pending != null)
+            pending.cancel();
+    }
+
+    /**
+     * Cache the completion results. While the user continue to type the same word, the cached
+     * candidates are filtered instead of running the completions again.
+     * This require that the candidates for a longer word is a subset of the candidates for a shorter word,
+     * completions where that is not the case should call {@link CompleteOperation#setCacheable(boolean)}.
+     *
+     * @param maxEntries max number of cached results
+     * @param timeToLive how long a result can be reused
+     * @param unit time unit
+     */
+    public void enableCompletionCache(int maxEntries, long timeToLive, TimeUnit unit) {
+        completionCache = new CompletionCache(maxEntries, unit.toMillis(timeToLive));
+    }
+
+    public void disableCompletionCache() {
+        completionCache = null;
+    }
+
+    public boolean isCompletionCacheEnabled() {
+        return completionCache != null;
+    }
+
+    /**
+     * Remove all cached completion results, eg. when the data the completions are based on have changed.
+     */
+    public void invalidateCompletionCache() {
+        CompletionCache cache = completionCache;
+        if(cache != null)
+            cache.clear();
+    }
+
+    /**
+     * If the completion candidates do not fit on the terminal, display one page at the time
+     * followed by a --More-- prompt.
+     * Space display the next page, enter the next row and any other key stop the display.
+     *
+     * @param pagedDisplay paged display
+     */
+    public void setPagedCompletionDisplay(boolean pagedDisplay) {
+        this.pagedDisplay = pagedDisplay;
+    }
+
+    public boolean isPagedCompletionDisplay() {
+        return pagedDisplay;
+    }
+
+    /**
+     * Only display the first (sorted) candidates when there are many completion candidates.
+     * The first candidates are selected with a bounded heap, the rest of the candidates are not sorted.
+     *
+     * @param limit max number of candidates to display, less than 1 to display all
+     */
+    public void setCompletionDisplayLimit(int limit) {
+        displayLimit = limit;
+    }
+
+    public int getCompletionDisplayLimit() {
+        return displayLimit;
+    }
+
+    /**
+     * Filter and rank the candidates with the given matcher, eg. {@link CompletionMatcher#FUZZY}.
+     * Note that the completions still need to return the candidates that might match,
+     * the matcher only remove the candidates that do not match and sort the rest by score.
+     * A single candidate that do not start with the completed word replace that word.
+     * The cached completion results are narrowed with the matcher, so they are dropped when it change.
+     *
+     * @param matcher matcher, null to use the candidates as they are (default)
+     */
+    public void setCompletionMatcher(CompletionMatcher matcher) {
+        completionMatcher = matcher;
+        invalidateCompletionCache();
+    }
+
+    public CompletionMatcher getCompletionMatcher() {
+        return completionMatcher;
+    }
+
     public abstract C createCompleteOperation(String buffer, int cursor);
 
     /**
@@ -99,39 +244,203 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
         if(completionList.size() < 1)
             return;
 
+        if(completionExecutor != null) {
+            completeAsync(buffer, inputProcessor);
+            return;
+        }
+
         List<C> possibleCompletions = createCompletionList(buffer);
 
         //LOGGER.info("Found completions: "+possibleCompletions);
+        complete(possibleCompletions, buffer, inputProcessor);
+    }
 
+    private void complete(List<C> possibleCompletions, Buffer buffer, InputProcessor inputProcessor) {
+        // the candidates of each operation, filtered by the matcher if it is set
+        List<List<TerminalString>> candidates = new ArrayList<>(possibleCompletions.size());
+        if(completionMatcher != null)
+            possibleCompletions = matchCandidates(possibleCompletions, candidates);
+        else {
+            for(C co : possibleCompletions)
+                candidates.add(co.getCompletionCandidates());
+        }
         if(possibleCompletions.size() == 0) {
             //do nothing
         }
         // only one hit, do a completion
         else if(possibleCompletions.size() == 1 &&
-                possibleCompletions.get(0).getCompletionCandidates().size() == 1) {
-            //some formatted completions might not be valid and should not be displayed
-            displayCompletion(
-                    possibleCompletions.get(0).getFormattedCompletionCandidatesTerminalString().get(0),
-                    buffer, inputProcessor,
-                    possibleCompletions.get(0).hasAppendSeparator(),
-                    possibleCompletions.get(0).getSeparator());
+                candidates.get(0).size() == 1 &&
+                total(possibleCompletions.get(0), candidates.get(0)) == 1) {
+            C co = possibleCompletions.get(0);
+            TerminalString candidate = candidates.get(0).get(0);
+            if(completionMatcher == null) {
+                //some formatted completions might not be valid and should not be displayed
+                displayCompletion(
+                        co.getFormattedCompletionCandidatesTerminalString().get(0),
+                        buffer, inputProcessor,
+                        co.hasAppendSeparator(),
+                        co.getSeparator());
+            }
+            //a matcher might accept a candidate that do not start with the word, replace the word
+            else if(!candidate.getCharacters().startsWith(completedWord(co))) {
+                String word = completedWord(co);
+                String completion = candidate.getCharacters();
+                if(completion.contains(" ") && !co.doIgnoreNonEscapedSpace())
+                    completion = Parser.switchSpacesToEscapedSpacesInWord(completion);
+                inputProcessor.buffer().delete(-word.codePointCount(0, word.length()));
+                inputProcessor.buffer().writeString(completion);
+                if(co.hasAppendSeparator())
+                    inputProcessor.buffer().writeChar(co.getSeparator());
+            }
+            else {
+                displayCompletion(formattedCandidate(co, candidate), buffer, inputProcessor,
+                        co.hasAppendSeparator(), co.getSeparator());
+            }
         }
         // more than one hit...
         else {
-            processMultipleCompletions(possibleCompletions, buffer, inputProcessor);
+            processMultipleCompletions(possibleCompletions, candidates, buffer, inputProcessor);
+        }
+    }
+
+    /**
+     * @return the operations that have candidates the matcher accept, the accepted candidates
+     *         of each operation are added to matchedCandidates. The operations are not modified.
+     */
+    private List<C> matchCandidates(List<C> possibleCompletions, List<List<TerminalString>> matchedCandidates) {
+        CompletionMatcher matcher = completionMatcher;
+        List<C> matched = new ArrayList<>(possibleCompletions.size());
+        for(C co : possibleCompletions) {
+            String word = completedWord(co);
+            List<TerminalString> candidates = co.getCompletionCandidates();
+            List<TerminalString> kept = new ArrayList<>(candidates.size());
+            for(TerminalString candidate : candidates) {
+                if(matcher.score(word, candidate.getCharacters()) != CompletionMatcher.NO_MATCH)
+                    kept.add(candidate);
+            }
+            if(kept.isEmpty())
+                continue;
+            matched.add(co);
+            matchedCandidates.add(kept);
+        }
+        return matched;
+    }
+
+    /**
+     * @return the total number of candidates, the filtered count unless the operation only have a sample
+     */
+    private int total(C co, List<TerminalString> candidates) {
+        int total = co.getTotalCompletionCandidates();
+        return total > co.getCompletionCandidates().size() ? total : candidates.size();
+    }
+
+    /**
+     * @return the candidate without the part of the word that is already typed,
+     *         same as {@link CompleteOperation#getFormattedCompletionCandidatesTerminalString()}
+     *         but the candidate is not modified
+     */
+    private TerminalString formattedCandidate(C co, TerminalString candidate) {
+        int typed = completedWord(co).length();
+        String characters = candidate.getCharacters();
+        return candidate.cloneRenderingAttributes(characters.length() >= typed ? characters.substring(typed) : "");
+    }
+
+    /**
+     * @return the part of the word being completed that is before the cursor
+     */
+    private String completedWord(C co) {
+        String line = co.getBuffer();
+        int offset = co.getOffset();
+        int cursor = co.getCursor();
+        if(co.doIgnoreOffset() || offset < 0 || offset > cursor || cursor > line.length())
+            return "";
+        return line.substring(offset, cursor);
+    }
+
+    /**
+     * The operations are created on the input thread, then completed in parallel on the executor.
+     * The result is displayed with exclusive access to the input processor, and only if the buffer
+     * have not changed in the meantime.
+     */
+    private void completeAsync(Buffer buffer, InputProcessor inputProcessor) {
+        cancelCompletion();
+        String line = buffer.asString();
+        int cursor = buffer.multiCursor();
+        List<Completion> completions = new ArrayList<>(completionList);
+        //cached results are used right away, the rest is completed on the executor
+        List<C> cached = new ArrayList<>(completions.size());
+        List<Completion> pending = new ArrayList<>();
+        List<C> operations = new ArrayList<>();
+        for(Completion completion : completions) {
+            C co = createCompleteOperation(buffer);
+            if(restoreFromCache(completion, co))
+                cached.add(co);
+            else {
+                cached.add(null);
+                pending.add(completion);
+                operations.add(co);
+            }
+        }
+        if(pending.isEmpty()) {
+            complete(withCandidates(cached), buffer, inputProcessor);
+            return;
         }
+
+        AsyncCompletion<C> completion = new AsyncCompletion<>(pending, operations, completed -> {
+            List<C> result = new ArrayList<>(cached);
+            for(int i=0, next=0; i < result.size(); i++) {
+                if(result.get(i) == null) {
+                    C co = completed.get(next++);
+                    if(co != null)
+                        storeInCache(completions.get(i), co);
+                    result.set(i, co);
+                }
+            }
+            inputProcessor.execute(() -> {
+                if(line.equals(buffer.asString()) && cursor == buffer.multiCursor())
+                    complete(withCandidates(result), buffer, inputProcessor);
+            });
+        });
+        pendingCompletion.set(completion);
+        completion.start(completionExecutor, completionTimeout);
+    }
+
+    private List<C> withCandidates(List<C> operations) {
+        List<C> possibleCompletions = new ArrayList<>(operations.size());
+        for(C co : operations)
+            if(co != null && co.getCompletionCandidates() != null && co.getCompletionCandidates().size() > 0)
+                possibleCompletions.add(co);
+        return possibleCompletions;
+    }
+
+    private boolean restoreFromCache(Completion completion, C co) {
+        CompletionCache cache = completionCache;
+        return cache != null && cache.restore(completion, co, completionMatcher);
+    }
+
+    private void storeInCache(Completion completion, C co) {
+        CompletionCache cache = completionCache;
+        if(cache != null)
+            cache.store(completion, co);
+    }
+
+    private C createCompleteOperation(Buffer buffer) {
+        if(aliasHandler == null)
+            return createCompleteOperation(buffer.asString(), buffer.multiCursor());
+        else
+            return aliasHandler.apply(buffer);
     }
 
     private List<C> createCompletionList(Buffer buffer) {
         List<C> possibleCompletions = new ArrayList<>();
         for(int i=0; i < completionList.size(); i++) {
-            final C co;
-            if(aliasHandler == null)
-                co = createCompleteOperation(buffer.asString(), buffer.multiCursor());
-            else
-                co = aliasHandler.apply(buffer);
+            final C co = createCompleteOperation(buffer);
+            Completion completion = completionList.get(i);
 
-            completionList.get(i).complete(co);
+            if(!restoreFromCache(completion, co)) {
+                completion.complete(co);
+                storeInCache(completion, co);
+            }
 
             if(co.getCompletionCandidates() != null && co.getCompletionCandidates().size() > 0)
                 possibleCompletions.add(co);
@@ -139,11 +448,26 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
         return possibleCompletions;
     }
 
-    private void processMultipleCompletions(List<C> possibleCompletions, Buffer buffer, InputProcessor inputProcessor) {
+    private void processMultipleCompletions(List<C> possibleCompletions, List<List<TerminalString>> candidates,
+                                            Buffer buffer, InputProcessor inputProcessor) {
         String startsWith = "";
 
-        if(!possibleCompletions.get(0).isIgnoreStartsWith())
-            startsWith = Parser.findStartsWithOperation(possibleCompletions);
+        int total = 0;
+        boolean sampled = false;
+        for(C co : possibleCompletions) {
+            if(co.getTotalCompletionCandidates() > co.getCompletionCandidates().size())
+                sampled = true;
+        }
+        for(int i = 0; i < possibleCompletions.size(); i++)
+            total += total(possibleCompletions.get(i), candidates.get(i));
+
+        //the common start of a sample might not be common for all the candidates
+        if(!possibleCompletions.get(0).isIgnoreStartsWith() && !sampled) {
+            if(completionMatcher == null)
+                startsWith = Parser.findStartsWithOperation(possibleCompletions);
+            else
+                startsWith = matchedStartsWith(possibleCompletions, candidates);
+        }
 
         if(startsWith.length() > 0 ) {
             if(startsWith.contains(" ") && !possibleCompletions.get(0).doIgnoreNonEscapedSpace())
@@ -157,24 +481,20 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
         // display all
         // check size
         else {
-            List<TerminalString> completions = new ArrayList<>();
-            for(int i=0; i < possibleCompletions.size(); i++)
-                completions.addAll(possibleCompletions.get(i).getCompletionCandidates());
-
-            if(completions.size() > 100) {
+            if(total > displayCompletionSize) {
                 if(status == CompletionStatus.ASKING_FOR_COMPLETIONS) {
-                    displayCompletions(completions, buffer, inputProcessor);
                     status = CompletionStatus.COMPLETE;
+                    displayCompletions(sortedCandidates(possibleCompletions, candidates), total, buffer, inputProcessor);
                 }
                 else {
                     status = CompletionStatus.ASKING_FOR_COMPLETIONS;
                     inputProcessor.buffer().writeOut(Config.CR);
-                    inputProcessor.buffer().writeOut("Display all " + completions.size() + " possibilities? (y or n)");
+                    inputProcessor.buffer().writeOut("Display all " + total + " possibilities? (y or n)");
                 }
             }
             // display all
             else {
-                displayCompletions(completions, buffer, inputProcessor);
+                displayCompletions(sortedCandidates(possibleCompletions, candidates), total, buffer, inputProcessor);
             }
         }
     }
@@ -201,14 +521,81 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
         }
     }
 
+    /**
+     * @return all candidates sorted, or only the first candidates if the display is limited.
+     *         If a matcher is set the candidates with the best score are first
+     */
+    private List<TerminalString> sortedCandidates(List<C> possibleCompletions, List<List<TerminalString>> candidates) {
+        Comparator<TerminalString> byName = new CaseInsensitiveComparator();
+        if(completionMatcher == null) {
+            List<TerminalString> completions = new ArrayList<>();
+            for(List<TerminalString> list : candidates)
+                completions.addAll(list);
+            return first(completions, byName);
+        }
+        List<Ranked> ranked = new ArrayList<>();
+        for(int i = 0; i < possibleCompletions.size(); i++) {
+            String word = completedWord(possibleCompletions.get(i));
+            for(TerminalString candidate : candidates.get(i))
+                ranked.add(new Ranked(completionMatcher.score(word, candidate.getCharacters()), candidate));
+        }
+        List<Ranked> sorted = first(ranked, (a, b) ->
+                a.score != b.score ? Integer.compare(b.score, a.score) : byName.compare(a.candidate, b.candidate));
+        List<TerminalString> completions = new ArrayList<>(sorted.size());
+        for(Ranked r : sorted)
+            completions.add(r.candidate);
+        return completions;
+    }
+
+    /**
+     * @return the common start of the matched candidates, after the typed word. Empty if some of the
+     *         candidates do not start with the typed word, there is then no common start to insert
+     */
+    private String matchedStartsWith(List<C> possibleCompletions, List<List<TerminalString>> candidates) {
+        List<String> formatted = new ArrayList<>();
+        for(int i = 0; i < possibleCompletions.size(); i++) {
+            C co = possibleCompletions.get(i);
+            String word = completedWord(co);
+            for(TerminalString candidate : candidates.get(i)) {
+                if(!candidate.getCharacters().startsWith(word))
+                    return "";
+                formatted.add(formattedCandidate(co, candidate).getCharacters());
+            }
+        }
+        return Parser.findStartsWith(formatted);
+    }
+
+    /**
+     * @return the items sorted, only the first displayLimit items if the display is limited
+     */
+    private <T> List<T> first(List<T> items, Comparator<T> comparator) {
+        if(displayLimit < 1 || items.size() <= displayLimit) {
+            items.sort(comparator);
+            return items;
+        }
+        //keep the first items in a heap where the head is the last item
+        PriorityQueue<T> first = new PriorityQueue<>(displayLimit + 1, comparator.reversed());
+        for(T item : items) {
+            if(first.size() < displayLimit)
+                first.add(item);
+            else if(comparator.compare(item, first.peek()) < 0) {
+                first.poll();
+                first.add(item);
+            }
+        }
+        List<T> sorted = new ArrayList<>(first);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
     /**
      * Display all possible completions
      *
-     * @param completions all completion items
+     * @param completions sorted completion items
+     * @param total number of completion items, including those that are not displayed
      */
-    private void displayCompletions(List<TerminalString> completions, Buffer buffer,
+    private void displayCompletions(List<TerminalString> completions, int total, Buffer buffer,
                                     InputProcessor inputProcessor) {
-        completions.sort(new CaseInsensitiveComparator());
 
         //if the buffer is longer than one line, we need to move the cursor down the number of lines
         //before we continue
@@ -220,15 +607,79 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
         }
         //finally move to a new line
         inputProcessor.buffer().writeOut(Config.CR);
+        if(total > completions.size()) {
+            inputProcessor.buffer().writeOut("Displaying " + completions.size() + " of " + total + " possibilities");
+            inputProcessor.buffer().writeOut(Config.CR);
+        }
+        if(pagedDisplay) {
+            CompletionPager completionPager = new CompletionPager(completions, inputProcessor.buffer().size().getWidth());
+            if(completionPager.rows() > pageRows(inputProcessor)) {
+                pager = completionPager;
+                status = CompletionStatus.DISPLAYING_COMPLETIONS;
+                displayPage(inputProcessor, pageRows(inputProcessor));
+                return;
+            }
+        }
         //then we print out the completions
-        inputProcessor.buffer().writeOut(Parser.formatDisplayListTerminalString(completions,
-                inputProcessor.buffer().size().getHeight(), inputProcessor.buffer().size().getWidth()));
+        displayBuffer.setLength(0);
+        Parser.formatDisplayListTerminalString(completions, inputProcessor.buffer().size().getHeight(),
+                inputProcessor.buffer().size().getWidth(), displayBuffer);
+        inputProcessor.buffer().writeOut(displayBuffer.toString());
         //then on the next line we write the line again
         inputProcessor.buffer().drawLineForceDisplay();
     }
 
+    /**
+     * Continue a paged display of completions.
+     *
+     * @param rows number of rows to display, if less than 1 a page is displayed
+     */
+    public void displayMoreCompletions(InputProcessor inputProcessor, int rows) {
+        if(pager == null) {
+            status = CompletionStatus.COMPLETE;
+            return;
+        }
+        //remove the --More-- prompt
+        inputProcessor.buffer().writeOut(ANSI.CURSOR_START);
+        inputProcessor.buffer().writeOut(ANSI.ERASE_WHOLE_LINE);
+        displayPage(inputProcessor, rows < 1 ? pageRows(inputProcessor) : rows);
+    }
+
+    /**
+     * Stop a paged display of completions and redraw the line.
+     */
+    public void stopDisplayingCompletions(InputProcessor inputProcessor) {
+        pager = null;
+        status = CompletionStatus.COMPLETE;
+        inputProcessor.buffer().writeOut(ANSI.CURSOR_START);
+        inputProcessor.buffer().writeOut(ANSI.ERASE_WHOLE_LINE);
+        inputProcessor.buffer().drawLineForceDisplay();
+    }
+
+    private void displayPage(InputProcessor inputProcessor, int rows) {
+        displayBuffer.setLength(0);
+        pager.render(displayBuffer, rows);
+        if(pager.hasMore()) {
+            displayBuffer.append(MORE);
+            inputProcessor.buffer().writeOut(displayBuffer.toString());
+        }
+        else {
+            pager = null;
+            status = CompletionStatus.COMPLETE;
+            inputProcessor.buffer().writeOut(displayBuffer.toString());
+            inputProcessor.buffer().drawLineForceDisplay();
+        }
+    }
+
+    /**
+     * @return number of rows in a page, one row is used by the --More-- prompt
+     */
+    private int pageRows(InputProcessor inputProcessor) {
+        return Math.max(1, inputProcessor.buffer().size().getHeight() - 1);
+    }
+
     public enum CompletionStatus {
-        ASKING_FOR_COMPLETIONS, COMPLETE;
+        ASKING_FOR_COMPLETIONS, DISPLAYING_COMPLETIONS, COMPLETE;
     }
 
     private static class CaseInsensitiveComparator implements Comparator<TerminalString> {
@@ -256,4 +707,14 @@ public abstract class CompletionHandler<C extends CompleteOperation> {
             return n1 - n2;
         }
     }
+
+    private static final class Ranked {
+        private final int score;
+        private final TerminalString candidate;
+
+        private Ranked(int score, TerminalString candidate) {
+            this.score = score;
+            this.candidate = candidate;
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+/**
+ * Decide if a completion candidate match what the user have typed, and how good the match is.
+ *
+ * Used by {@link CompletionHandler#setCompletionMatcher(CompletionMatcher)} to filter and rank
+ * the candidates, and by {@link WordCompletion} to find the candidates.
+ */
+@FunctionalInterface
+public interface CompletionMatcher {
+
+    /**
+     * Score of candidates that do not match
+     */
+    int NO_MATCH = Integer.MIN_VALUE;
+
+    /**
+     * Candidates match if they start with the pattern, all matches have the same score
+     */
+    CompletionMatcher PREFIX = (pattern, candidate) -> candidate.startsWith(pattern) ? 0 : NO_MATCH;
+
+    /**
+     * Subsequence matching, see {@link FuzzyMatcher}
+     */
+    CompletionMatcher FUZZY = new FuzzyMatcher();
+
+    /**
+     * @param pattern what the user have typed
+     * @param candidate candidate
+     * @return the score of the match, higher is better, or {@link #NO_MATCH}
+     */
+    int score(String pattern, String candidate);
+}
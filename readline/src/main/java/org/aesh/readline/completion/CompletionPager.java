@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.terminal.formatting.TerminalString;
+import org.aesh.readline.util.Parser;
+import org.aesh.terminal.utils.Config;
+
+import java.util.List;
+
+/**
+ * Display completion candidates in columns, a few rows at the time.
+ *
+ * The layout is computed once, the same way as {@link org.aesh.readline.util.Parser#formatDisplayListTerminalString},
+ * and only the rows that are displayed are rendered.
+ */
+class CompletionPager {
+
+    private final List<TerminalString> candidates;
+    private final int[] widths;
+    private final int columnWidth;
+    private final int numColumns;
+    private final int numRows;
+    private int row;
+
+    CompletionPager(List<TerminalString> candidates, int termWidth) {
+        this.candidates = candidates;
+        if(termWidth < 1)
+            termWidth = 80;
+        widths = new int[candidates.size()];
+        int maxLength = 0;
+        for(int i = 0; i < widths.length; i++) {
+            widths[i] = Parser.displayWidth(candidates.get(i).getCharacters());
+            maxLength = Math.max(maxLength, widths[i]);
+        }
+        // adding two spaces for better readability
+        columnWidth = maxLength + 2;
+        numColumns = Math.max(1, Math.min(termWidth / columnWidth, candidates.size()));
+        numRows = (candidates.size() + numColumns - 1) / numColumns;
+    }
+
+    int rows() {
+        return numRows;
+    }
+
+    boolean hasMore() {
+        return row < numRows;
+    }
+
+    /**
+     * Render the next rows, each row end with a line separator
+     *
+     * @param out where the rows are appended
+     * @param count max number of rows
+     */
+    void render(StringBuilder out, int count) {
+        int end = Math.min(numRows, row + count);
+        for(; row < end; row++) {
+            if(numRows == 1)
+                renderSingleRow(out);
+            else {
+                for(int c = 0; c < numColumns; c++) {
+                    int fetch = row + (c * numRows);
+                    if(fetch >= candidates.size())
+                        break;
+                    out.append(candidates.get(fetch).toString());
+                    // no need to pad the right most column
+                    if(c < numColumns - 1)
+                        pad(out, columnWidth - widths[fetch]);
+                }
+            }
+            out.append(Config.getLineSeparator());
+        }
+    }
+
+    private void renderSingleRow(StringBuilder out) {
+        for(TerminalString candidate : candidates)
+            out.append(candidate.toString()).append("  ");
+    }
+
+    private static void pad(StringBuilder out, int spaces) {
+        for(int i = 0; i < spaces; i++)
+            out.append(' ');
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+/**
+ * Fuzzy matcher, a candidate match if all the characters in the pattern are found in
+ * the candidate in the same order, ignoring case. Eg. gcb match git-create-branch.
+ *
+ * The score reward matches at the start of words (after a separator or a camel case hump),
+ * consecutive matches and matches at the start of the candidate, and penalize gaps.
+ * The best alignment is found with dynamic programming over two rows that are reused pr thread,
+ * so scoring do not allocate.
+ */
+public class FuzzyMatcher implements CompletionMatcher {
+
+    private static final int MATCH = 16;
+    private static final int BOUNDARY = 10;
+    private static final int CAMEL_CASE = 9;
+    private static final int CONSECUTIVE = 6;
+    private static final int FIRST_CHAR = 8;
+    private static final int GAP = 1;
+    // lower than any real score, but safe to subtract from
+    private static final int NONE = Integer.MIN_VALUE / 2;
+
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[2][64]);
+
+    @Override
+    public int score(String pattern, String candidate) {
+        int m = pattern.length();
+        int n = candidate.length();
+        if(m == 0)
+            return 0;
+        if(m > n || !isSubsequence(pattern, candidate))
+            return NO_MATCH;
+
+        int[][] rows = rows(n);
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for(int i = 0; i < m; i++) {
+            char p = pattern.charAt(i);
+            // best score of the previous row ending before j - 1, with the gap penalty applied
+            int run = NONE;
+            for(int j = 0; j < n; j++) {
+                if(i > 0 && j > 1)
+                    run = Math.max(run, previous[j - 2]) - GAP;
+                if(!equalsIgnoreCase(p, candidate.charAt(j))) {
+                    current[j] = NONE;
+                    continue;
+                }
+                int bonus = MATCH + bonus(candidate, j);
+                if(i == 0)
+                    current[j] = j == 0 ? bonus + FIRST_CHAR : bonus;
+                else {
+                    int best = NONE;
+                    if(j > 0 && previous[j - 1] > NONE)
+                        best = previous[j - 1] + CONSECUTIVE;
+                    if(run > NONE)
+                        best = Math.max(best, run);
+                    current[j] = best > NONE ? best + bonus : NONE;
+                }
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+
+        int score = NO_MATCH;
+        for(int j = m - 1; j < n; j++)
+            score = Math.max(score, previous[j]);
+        return score;
+    }
+
+    private static int[][] rows(int length) {
+        int[][] rows = ROWS.get();
+        if(rows[0].length < length) {
+            rows = new int[2][Math.max(length, rows[0].length * 2)];
+            ROWS.set(rows);
+        }
+        return rows;
+    }
+
+    private static int bonus(String candidate, int index) {
+        if(index == 0)
+            return BOUNDARY;
+        char prev = candidate.charAt(index - 1);
+        char c = candidate.charAt(index);
+        if(!Character.isLetterOrDigit(prev) && Character.isLetterOrDigit(c))
+            return BOUNDARY;
+        if(Character.isLowerCase(prev) && Character.isUpperCase(c))
+            return CAMEL_CASE;
+        return 0;
+    }
+
+    private static boolean isSubsequence(String pattern, String candidate) {
+        int i = 0;
+        for(int j = 0; j < candidate.length() && i < pattern.length(); j++)
+            if(equalsIgnoreCase(pattern.charAt(i), candidate.charAt(j)))
+                i++;
+        return i == pattern.length();
+    }
+
+    private static boolean equalsIgnoreCase(char a, char b) {
+        return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
+}
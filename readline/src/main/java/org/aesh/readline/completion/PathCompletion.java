@@ -0,0 +1,443 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.util.LoggerUtil;
+import org.aesh.readline.util.Parser;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Completion of file system paths.
+ *
+ * The word in front of the cursor is completed as a path, relative to the working directory
+ * unless it is absolute or start with ~/. Spaces in the names are escaped the same way as
+ * {@link Parser#switchSpacesToEscapedSpacesInWord(String)} and directories get a trailing /.
+ * Only / is a separator, \ is the escape character on every platform.
+ *
+ * Directory listings are cached, a cached listing is stale once a {@link WatchService} report
+ * a change in the directory. One watch service and thread is shared by all the instances.
+ * If the directory can not be watched the modification time of the
+ * directory is checked instead, which is still a lot cheaper than listing it again on slow
+ * (eg. network) file systems.
+ * When a directory is listed, the matching sub directories are listed in the background so the
+ * next completion is served from the cache.
+ */
+public class PathCompletion implements Completion<CompleteOperation>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerUtil.getLogger(PathCompletion.class.getName());
+
+    private static final int MAX_PREFETCH = 16;
+
+    private final Path workingDirectory;
+    private final Map<Path, Listing> listings;
+    private final Set<Path> prefetching = ConcurrentHashMap.newKeySet();
+    private final DirectoryWatcher watcher = DirectoryWatcher.shared();
+    // guarded by listings
+    private boolean closed;
+    private volatile Executor prefetchExecutor;
+
+    public PathCompletion() {
+        this(Paths.get(System.getProperty("user.dir")));
+    }
+
+    public PathCompletion(Path workingDirectory) {
+        this(workingDirectory, 256);
+    }
+
+    /**
+     * @param workingDirectory relative paths are resolved against this directory
+     * @param maxDirectories max number of cached directory listings, the least recently used are removed
+     */
+    public PathCompletion(Path workingDirectory, int maxDirectories) {
+        this.workingDirectory = workingDirectory.toAbsolutePath();
+        listings = new LinkedHashMap<Path, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+                if(size() > maxDirectories) {
+                    release(eldest.getValue().watch);
+                    return true;
+                }
+                return false;
+            }
+        };
+        prefetchExecutor = AsyncCompletion.defaultExecutor();
+    }
+
+    /**
+     * @param executor executor used to list sub directories in the background,
+     *                 null to not prefetch
+     */
+    public void setPrefetchExecutor(Executor executor) {
+        prefetchExecutor = executor;
+    }
+
+    @Override
+    public void complete(CompleteOperation co) {
+        String buffer = co.getBuffer();
+        int cursor = Math.min(co.getCursor(), buffer.length());
+        String escaped = Parser.findEscapedSpaceWordCloseToEnd(buffer.substring(0, cursor));
+        String word = Parser.switchEscapedSpacesToSpacesInWord(escaped);
+        int nameStart = lastSeparator(word) + 1;
+        String prefix = word.substring(nameStart);
+        Path directory = resolve(word.substring(0, nameStart));
+        Listing listing = directory != null ? listing(directory) : null;
+        if(listing == null)
+            return;
+
+        boolean hidden = prefix.startsWith(".");
+        int lastDirectory = -1;
+        int count = 0;
+        List<Path> prefetch = new ArrayList<>();
+        for(int i = listing.first(prefix); i < listing.names.length && listing.names[i].startsWith(prefix); i++) {
+            String name = listing.names[i];
+            if(!hidden && name.startsWith("."))
+                continue;
+            count++;
+            if(listing.directories[i]) {
+                lastDirectory = count;
+                co.addCompletionCandidate(Parser.switchSpacesToEscapedSpacesInWord(name) + '/');
+                if(prefetch.size() < MAX_PREFETCH)
+                    prefetch.add(directory.resolve(name));
+            }
+            else
+                co.addCompletionCandidate(Parser.switchSpacesToEscapedSpacesInWord(name));
+        }
+        if(count == 0)
+            return;
+        //escaping only change the spaces, the separators are at the same place
+        co.setOffset(cursor - (escaped.length() - lastSeparator(escaped) - 1));
+        //keep completing inside a single directory
+        if(count == 1 && lastDirectory == 1)
+            co.doAppendSeparator(false);
+        prefetch(prefetch);
+    }
+
+    /**
+     * Stop watching the cached directories and drop the cache
+     */
+    @Override
+    public void close() {
+        List<Listing> dropped;
+        synchronized(listings) {
+            closed = true;
+            dropped = new ArrayList<>(listings.values());
+            listings.clear();
+        }
+        for(Listing listing : dropped)
+            release(listing.watch);
+    }
+
+    boolean isCached(Path directory) {
+        Path normalized = directory.toAbsolutePath().normalize();
+        Listing listing;
+        synchronized(listings) {
+            listing = listings.get(normalized);
+        }
+        return listing != null && listing.isCurrent(normalized);
+    }
+
+    private Path resolve(String directory) {
+        try {
+            if(directory.startsWith("~/"))
+                return Paths.get(System.getProperty("user.home"), directory.substring(2)).normalize();
+            return workingDirectory.resolve(directory).normalize();
+        }
+        catch(RuntimeException e) {
+            //not a valid path
+            return null;
+        }
+    }
+
+    /**
+     * @return the cached listing of the directory, or a new listing if the cache is stale
+     */
+    private Listing listing(Path directory) {
+        Listing listing;
+        synchronized(listings) {
+            listing = listings.get(directory);
+        }
+        if(listing != null && listing.isCurrent(directory))
+            return listing;
+
+        //watch before listing, a change while listing will then make the new listing stale
+        Watch watch = watcher != null ? watcher.watch(directory) : null;
+        listing = list(directory, watch);
+        if(listing == null) {
+            release(watch);
+            return null;
+        }
+        Listing replaced;
+        synchronized(listings) {
+            if(closed)
+                replaced = listing;
+            else
+                replaced = listings.put(directory, listing);
+        }
+        if(replaced != null)
+            release(replaced.watch);
+        return listing;
+    }
+
+    private void release(Watch watch) {
+        if(watch != null)
+            watcher.release(watch);
+    }
+
+    private void prefetch(List<Path> directories) {
+        Executor executor = prefetchExecutor;
+        if(executor == null)
+            return;
+        for(Path directory : directories) {
+            if(isCached(directory) || !prefetching.add(directory))
+                continue;
+            try {
+                executor.execute(() -> {
+                    try {
+                        listing(directory);
+                    }
+                    finally {
+                        prefetching.remove(directory);
+                    }
+                });
+            }
+            catch(RuntimeException e) {
+                prefetching.remove(directory);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Walking the directory with a depth of 1 give the attributes read while listing it
+     * (where the file system provide them), instead of reading them again for every entry.
+     */
+    private static Listing list(Path directory, Watch watch) {
+        long version = watch != null ? watch.version : 0;
+        long modified;
+        Map<String, Boolean> entries = new HashMap<>();
+        try {
+            modified = Files.getLastModifiedTime(directory).toMillis();
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    //only the links need to be followed to know if they point to a directory
+                    entries.put(file.getFileName().toString(), attributes.isSymbolicLink() ?
+                            Files.isDirectory(file) : attributes.isDirectory());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if(file.equals(directory))
+                        throw e;
+                    entries.put(file.getFileName().toString(), false);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch(IOException | SecurityException e) {
+            LOGGER.log(Level.FINE, "Failed to list directory "+directory, e);
+            return null;
+        }
+        String[] sorted = entries.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        boolean[] directories = new boolean[sorted.length];
+        for(int i = 0; i < sorted.length; i++)
+            directories[i] = entries.get(sorted[i]);
+        return new Listing(sorted, directories, modified, watch, version);
+    }
+
+    private static int lastSeparator(String word) {
+        return word.lastIndexOf('/');
+    }
+
+    /**
+     * A directory registered with the shared watch service, used by all the cached listings of
+     * the directory.
+     */
+    private static final class Watch {
+        private final Path directory;
+        private final WatchKey key;
+        // guarded by the watcher
+        private int users;
+        // incremented for every change reported in the directory
+        private volatile long version;
+
+        private Watch(Path directory, WatchKey key) {
+            this.directory = directory;
+            this.key = key;
+        }
+
+        private boolean isCurrent(long listed) {
+            return key.isValid() && version == listed;
+        }
+    }
+
+    /**
+     * The watch service shared by all the instances, a directory is watched as long as one
+     * instance has a listing of it.
+     */
+    private static final class DirectoryWatcher {
+
+        private static final class Holder {
+            private static final DirectoryWatcher SHARED = create();
+        }
+
+        private final WatchService service;
+        private final Map<Path, Watch> watches = new HashMap<>();
+
+        private DirectoryWatcher(WatchService service) {
+            this.service = service;
+        }
+
+        /**
+         * @return the shared watcher, null when the file system can not be watched
+         */
+        private static DirectoryWatcher shared() {
+            return Holder.SHARED;
+        }
+
+        private static DirectoryWatcher create() {
+            WatchService service;
+            try {
+                service = FileSystems.getDefault().newWatchService();
+            }
+            catch(IOException | UnsupportedOperationException e) {
+                LOGGER.log(Level.FINE, "No watch service, directory modification times are checked instead", e);
+                return null;
+            }
+            DirectoryWatcher watcher = new DirectoryWatcher(service);
+            Thread thread = new Thread(watcher::processChanges, "aesh-path-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        }
+
+        /**
+         * @return the watch of the directory, null if it can not be watched
+         */
+        private synchronized Watch watch(Path directory) {
+            Watch watch = watches.get(directory);
+            if(watch == null || !watch.key.isValid()) {
+                try {
+                    watch = new Watch(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.OVERFLOW));
+                }
+                catch(IOException | UnsupportedOperationException | ClosedWatchServiceException | SecurityException e) {
+                    //check the modification time instead
+                    return null;
+                }
+                watches.put(directory, watch);
+            }
+            watch.users++;
+            return watch;
+        }
+
+        private synchronized void release(Watch watch) {
+            if(--watch.users == 0) {
+                watch.key.cancel();
+                watches.remove(watch.directory, watch);
+            }
+        }
+
+        private void processChanges() {
+            try {
+                while(true) {
+                    WatchKey key = service.take();
+                    key.pollEvents();
+                    synchronized(this) {
+                        Watch watch = watches.get((Path) key.watchable());
+                        if(watch != null && watch.key == key)
+                            watch.version++;
+                        if(!key.reset() && watch != null && watch.key == key)
+                            watches.remove(watch.directory);
+                    }
+                }
+            }
+            catch(ClosedWatchServiceException | InterruptedException e) {
+                //closed
+            }
+        }
+    }
+
+    private static final class Listing {
+        private final String[] names;
+        private final boolean[] directories;
+        private final long modified;
+        private final Watch watch;
+        private final long version;
+
+        private Listing(String[] names, boolean[] directories, long modified, Watch watch, long version) {
+            this.names = names;
+            this.directories = directories;
+            this.modified = modified;
+            this.watch = watch;
+            this.version = version;
+        }
+
+        /**
+         * A watched listing is stale once a change is reported,
+         * otherwise check the modification time of the directory
+         */
+        private boolean isCurrent(Path directory) {
+            if(watch != null)
+                return watch.isCurrent(version);
+            try {
+                return Files.getLastModifiedTime(directory).toMillis() == modified;
+            }
+            catch(IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * @return index of the first name that is equal or greater than the prefix
+         */
+        private int first(String prefix) {
+            int index = Arrays.binarySearch(names, prefix);
+            return index < 0 ? -index - 1 : index;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.util.Parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Completion for a fixed set of words, eg. command or option names.
+ *
+ * The words are stored in a radix trie that is built once, it is not modified after that so
+ * the same instance can be shared by all sessions. Finding the words that start with a prefix
+ * is done in time proportional to the prefix length and the number of matching words.
+ *
+ * The word that is completed is split the same way as the rest of the completions, a space escaped
+ * with \ is part of the word, see {@link Parser#findEscapedSpaceWordCloseToEnd(String)}. Spaces in the
+ * candidates are escaped.
+ *
+ * If a {@link CompletionMatcher} is given, eg. {@link CompletionMatcher#FUZZY}, all words are scored with it
+ * and the matching words are ranked by their score instead.
+ */
+public class WordCompletion implements Completion<CompleteOperation> {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+    private final String[] words;
+    private final CompletionMatcher matcher;
+
+    public WordCompletion(String... words) {
+        this(Arrays.asList(words));
+    }
+
+    public WordCompletion(Collection<String> words) {
+        this(null, words);
+    }
+
+    /**
+     * @param matcher matcher, if null or {@link CompletionMatcher#PREFIX} the words starting with
+     *                the completed word are found with the trie
+     * @param words words
+     */
+    public WordCompletion(CompletionMatcher matcher, Collection<String> words) {
+        this.words = new TreeSet<>(words).toArray(new String[0]);
+        this.matcher = matcher == CompletionMatcher.PREFIX ? null : matcher;
+        root = this.words.length > 0 ? build(this.words, 0, this.words.length, 0) : null;
+    }
+
+    /**
+     * @return number of words
+     */
+    public int size() {
+        return words.length;
+    }
+
+    @Override
+    public void complete(CompleteOperation co) {
+        String buffer = co.getBuffer();
+        int cursor = Math.min(co.getCursor(), buffer.length());
+        String escaped = Parser.findEscapedSpaceWordCloseToEnd(buffer.substring(0, cursor));
+        String word = Parser.switchEscapedSpacesToSpacesInWord(escaped);
+        List<String> matches = matcher == null ? find(word) : match(word);
+        if(!matches.isEmpty()) {
+            for(String match : matches)
+                co.addCompletionCandidate(match.indexOf(' ') < 0 ? match :
+                        Parser.switchSpacesToEscapedSpacesInWord(match));
+            co.setOffset(cursor - escaped.length());
+            //the matches might not start with the word
+            if(matcher != null)
+                co.setIgnoreStartsWith(true);
+        }
+    }
+
+    /**
+     * Score all words with the matcher, if no matcher is given this is the same as {@link #find(String)}
+     *
+     * @param pattern pattern
+     * @return matching words, the best match first
+     */
+    public List<String> match(String pattern) {
+        if(matcher == null)
+            return find(pattern);
+        // negated score in the high bits and word index in the low bits, sorting them rank the words
+        long[] ranked = new long[words.length];
+        int count = 0;
+        for(int i = 0; i < words.length; i++) {
+            int score = matcher.score(pattern, words[i]);
+            if(score != CompletionMatcher.NO_MATCH)
+                ranked[count++] = (-(long) score << 32) | i;
+        }
+        Arrays.sort(ranked, 0, count);
+        List<String> matches = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+            matches.add(words[(int) ranked[i]]);
+        return matches;
+    }
+
+    /**
+     * @param prefix prefix
+     * @return all words starting with prefix, sorted
+     */
+    public List<String> find(String prefix) {
+        StringBuilder path = new StringBuilder(prefix.length() + 16);
+        Node node = findNode(prefix, path);
+        if(node == null)
+            return Collections.emptyList();
+        List<String> words = new ArrayList<>(node.count);
+        collect(node, path, words);
+        return words;
+    }
+
+    /**
+     * Find the node where all the words below start with prefix,
+     * the path to the node (including its label) is appended to path.
+     */
+    private Node findNode(String prefix, StringBuilder path) {
+        Node node = root;
+        int pos = 0;
+        while(node != null) {
+            String label = node.label;
+            int length = Math.min(label.length(), prefix.length() - pos);
+            if(!prefix.regionMatches(pos, label, 0, length))
+                return null;
+            path.append(label);
+            pos += length;
+            if(pos == prefix.length())
+                return node;
+            node = node.child(prefix.charAt(pos));
+        }
+        return null;
+    }
+
+    private static void collect(Node node, StringBuilder path, List<String> words) {
+        if(node.word)
+            words.add(path.toString());
+        for(Node child : node.children) {
+            int length = path.length();
+            path.append(child.label);
+            collect(child, path, words);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Build the node for the sorted words in [from, to), they all share the first depth chars.
+     */
+    private static Node build(String[] words, int from, int to, int depth) {
+        //the words are sorted, the common prefix of the range is the common prefix of the first and last
+        String first = words[from];
+        String last = words[to - 1];
+        int end = depth;
+        int max = Math.min(first.length(), last.length());
+        while(end < max && first.charAt(end) == last.charAt(end))
+            end++;
+
+        int i = from;
+        boolean word = first.length() == end;
+        if(word)
+            i++;
+        List<Node> children = new ArrayList<>();
+        while(i < to) {
+            char c = words[i].charAt(end);
+            int j = i + 1;
+            while(j < to && words[j].charAt(end) == c)
+                j++;
+            children.add(build(words, i, j, end));
+            i = j;
+        }
+        return new Node(first.substring(depth, end), word, to - from,
+                children.isEmpty() ? NO_CHILDREN : children.toArray(new Node[children.size()]));
+    }
+
+    private static final class Node {
+        private final String label;
+        private final boolean word;
+        // number of words in this node and below
+        private final int count;
+        // sorted by the first char of the label
+        private final Node[] children;
+        private final char[] firstChars;
+
+        private Node(String label, boolean word, int count, Node[] children) {
+            this.label = label;
+            this.word = word;
+            this.count = count;
+            this.children = children;
+            firstChars = new char[children.length];
+            for(int i = 0; i < children.length; i++)
+                firstChars[i] = children[i].label.charAt(0);
+        }
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(firstChars, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+}
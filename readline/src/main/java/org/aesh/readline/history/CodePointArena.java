@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of code point arrays packed into one byte array.
+ *
+ * Entries where all code points are below 256 are stored as Latin-1, one byte pr character,
+ * other entries are stored as UTF-8. An entry is only decoded back to code points when it is fetched,
+ * so each get returns a new array.
+ * Removing the first entry is cheap, the arena is compacted once half of it is unused.
+ */
+class CodePointArena extends AbstractList<int[]> implements RandomAccess {
+
+    // high bit of an offset mark the entry as UTF-8 encoded
+    private static final int UTF8 = 0x80000000;
+
+    private byte[] bytes;
+    // offsets[head..head+size) point to the start of each entry
+    private int[] offsets;
+    private int head;
+    private int size;
+    private int used;
+
+    CodePointArena() {
+        bytes = new byte[1024];
+        offsets = new int[32];
+    }
+
+    @Override
+    public int[] get(int index) {
+        checkIndex(index);
+        int start = offsets[head + index];
+        int from = start & ~UTF8;
+        int to = end(index);
+        if((start & UTF8) == 0) {
+            int[] line = new int[to - from];
+            for(int i = 0; i < line.length; i++)
+                line[i] = bytes[from + i] & 0xFF;
+            return line;
+        }
+        else
+            return decodeUtf8(from, to);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(int[] line) {
+        int length = encodedLength(line);
+        boolean latin1 = length == line.length;
+        ensureBytes(length);
+        if(head + size == offsets.length)
+            makeRoom();
+        offsets[head + size] = latin1 ? used : used | UTF8;
+        if(latin1) {
+            for(int c : line)
+                bytes[used++] = (byte) c;
+        }
+        else
+            used = encodeUtf8(line, used);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public int[] remove(int index) {
+        int[] line = get(index);
+        if(index == 0) {
+            head++;
+            size--;
+            if(size == 0)
+                clear();
+            else if(head > size)
+                compact();
+        }
+        else {
+            int from = offsets[head + index] & ~UTF8;
+            int to = end(index);
+            int length = to - from;
+            System.arraycopy(bytes, to, bytes, from, used - to);
+            used -= length;
+            for(int i = head + index + 1; i < head + size; i++)
+                offsets[i - 1] = offsets[i] - length;
+            size--;
+        }
+        modCount++;
+        return line;
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+        used = 0;
+        modCount++;
+    }
+
+    private int end(int index) {
+        if(index + 1 < size)
+            return offsets[head + index + 1] & ~UTF8;
+        return used;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+    }
+
+    private void ensureBytes(int length) {
+        if(used + length > bytes.length) {
+            compact();
+            if(used + length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + length));
+        }
+    }
+
+    private void makeRoom() {
+        if(head > 0)
+            compact();
+        else
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+    }
+
+    /**
+     * Move the live entries to the start of the arena
+     */
+    private void compact() {
+        if(head == 0)
+            return;
+        int shift = offsets[head] & ~UTF8;
+        System.arraycopy(bytes, shift, bytes, 0, used - shift);
+        used -= shift;
+        for(int i = 0; i < size; i++)
+            offsets[i] = offsets[head + i] - shift;
+        head = 0;
+    }
+
+    private static int encodedLength(int[] line) {
+        int length = 0;
+        boolean latin1 = true;
+        for(int c : line) {
+            if(c < 0x80)
+                length++;
+            else {
+                if(c > 0xFF)
+                    latin1 = false;
+                if(c < 0x800)
+                    length += 2;
+                else if(c < 0x10000)
+                    length += 3;
+                else
+                    length += 4;
+            }
+        }
+        return latin1 ? line.length : length;
+    }
+
+    private int encodeUtf8(int[] line, int pos) {
+        for(int c : line) {
+            if(c < 0x80)
+                bytes[pos++] = (byte) c;
+            else if(c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(c < 0x10000) {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else {
+                bytes[pos++] = (byte) (0xF0 | (c >> 18));
+                bytes[pos++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private int[] decodeUtf8(int from, int to) {
+        int count = 0;
+        for(int i = from; i < to; i++)
+            if((bytes[i] & 0xC0) != 0x80)
+                count++;
+        int[] line = new int[count];
+        int pos = from;
+        for(int i = 0; i < count; i++) {
+            int b = bytes[pos++] & 0xFF;
+            if(b < 0x80)
+                line[i] = b;
+            else if(b < 0xE0)
+                line[i] = ((b & 0x1F) << 6) | (bytes[pos++] & 0x3F);
+            else if(b < 0xF0) {
+                line[i] = ((b & 0x0F) << 12) | ((bytes[pos] & 0x3F) << 6) | (bytes[pos + 1] & 0x3F);
+                pos += 2;
+            }
+            else {
+                line[i] = ((b & 0x07) << 18) | ((bytes[pos] & 0x3F) << 12) |
+                        ((bytes[pos + 1] & 0x3F) << 6) | (bytes[pos + 2] & 0x3F);
+                pos += 3;
+            }
+        }
+        return line;
+    }
+}
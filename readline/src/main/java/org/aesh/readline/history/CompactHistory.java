@@ -0,0 +1,39 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+/**
+ * An in-memory history that pack all entries into one byte array instead of
+ * keeping an int[] pr entry. Mostly ASCII entries use one byte pr character.
+ * Entries are decoded when they are fetched, so prefer this for large histories
+ * where memory matter more than the cost of fetching.
+ * No content index is kept, so find and erase duplicates scan the entries.
+ * By default max size is 500
+ */
+public class CompactHistory extends InMemoryHistory {
+
+    public CompactHistory() {
+        this(500);
+    }
+
+    public CompactHistory(int maxSize) {
+        super(maxSize, new CodePointArena(), false);
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.aesh.readline.history;
 
+import org.aesh.readline.util.Parser;
+
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -59,6 +62,73 @@ public abstract class History {
 
     public abstract int[] search(int[] search);
 
+    /**
+     * Find the next entry that starts with the given prefix, moving from the current
+     * fetch position in the given direction. The fetch position is moved to the found entry,
+     * if no entry is found it is not moved, except that a FORWARD search that run out of entries
+     * move it after the newest entry (see {@link #isFetchAtEnd()}).
+     * This default implementation move through the entries with
+     * {@link #getPreviousFetch()} and {@link #getNextFetch()}, and move back if a reverse
+     * search found nothing. Implementations should override it with a more efficient lookup.
+     *
+     * @param prefix prefix
+     * @param direction REVERSE to search older entries, FORWARD to search newer entries
+     * @return the entry found, or null if no entry matched
+     */
+    public int[] searchPrefix(int[] prefix, SearchDirection direction) {
+        boolean reverse = direction == SearchDirection.REVERSE;
+        int[] previous = null;
+        int moves = 0;
+        for(int i = 0; i < size(); i++) {
+            int[] entry = reverse ? getPreviousFetch() : getNextFetch();
+            // we've reached the first or the last entry
+            if(entry == null || entry == previous || entry == getCurrent())
+                break;
+            moves++;
+            if(Parser.arrayStartsWith(entry, prefix))
+                return entry;
+            previous = entry;
+        }
+        // nothing matched, move back to where a reverse search started,
+        // a forward search is after the newest entry now
+        if(reverse) {
+            for(; moves > 0; moves--)
+                getNextFetch();
+        }
+        return null;
+    }
+
+    /**
+     * @return true if no entry is fetched, the fetch position is after the newest entry where
+     *         {@link #getNextFetch()} return {@link #getCurrent()}. A history search that start
+     *         there save the edited line with {@link #setCurrent(int[])}, so it can be restored.
+     *         This default implementation return false, the line is then not restored.
+     */
+    public boolean isFetchAtEnd() {
+        return false;
+    }
+
+    /**
+     * @return true if the history store a timestamp for each entry, so
+     *         {@link #getEntries(long, long)} can return them
+     */
+    public boolean supportsTimestamps() {
+        return false;
+    }
+
+    /**
+     * Iterate over the entries stored from (inclusive) to (exclusive), in the order they were stored.
+     * Only histories that store timestamps have entries to return, see {@link #supportsTimestamps()}
+     * and {@link TimestampedFileHistory}.
+     *
+     * @param from start time in milliseconds since the epoch
+     * @param to end time in milliseconds since the epoch
+     * @return entries in the time range, empty if the history do not store timestamps
+     */
+    public Iterable<HistoryEntry> getEntries(long from, long to) {
+        return Collections.emptyList();
+    }
+
     public abstract void setCurrent(int[] line);
 
     public abstract int[] getCurrent();
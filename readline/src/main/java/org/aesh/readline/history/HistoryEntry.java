@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+/**
+ * A history entry with the time it was stored and the session that stored it.
+ */
+public class HistoryEntry {
+
+    private final long timestamp;
+    private final String sessionId;
+    private final int[] line;
+
+    public HistoryEntry(long timestamp, String sessionId, int[] line) {
+        this.timestamp = timestamp;
+        this.sessionId = sessionId;
+        this.line = line;
+    }
+
+    /**
+     * @return time the entry was stored, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public int[] getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Append only binary history file.
+ *
+ * The file start with a header (magic, version) followed by records:
+ * <pre>
+ * int    length of the rest of the record
+ * long   timestamp
+ * short  length of session id, unsigned
+ * byte[] session id, UTF-8, at most {@link #MAX_SESSION_LENGTH} bytes
+ * byte[] line, UTF-8
+ * </pre>
+ * Records are grouped in blocks of {@link #BLOCK_RECORDS} records. For each complete block
+ * the index file (same name with .idx appended) store its offsets, record count and the lowest and
+ * highest timestamp, so time range queries only read the blocks that overlap the range.
+ * The index is rebuilt from the history file if it is missing or do not match.
+ * Only one HistoryLog should write to a file at the time.
+ */
+class HistoryLog {
+
+    static final int BLOCK_RECORDS = 128;
+    static final int MAX_SESSION_LENGTH = 0xFFFF;
+
+    private static final int MAGIC = 0x41455348; // AESH
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int INDEX_ENTRY_SIZE = 36;
+    private static final int RECORD_HEADER_SIZE = 14;
+
+    private final File file;
+    private final File indexFile;
+    // complete blocks, stored in the index file
+    private final List<Block> blocks = new ArrayList<>();
+    // the block currently appended to
+    private Block open;
+
+    HistoryLog(File file) throws IOException {
+        this.file = file;
+        this.indexFile = new File(file.getPath() + ".idx");
+        load();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the session id do not fit in a record
+     */
+    static byte[] checkSessionId(String sessionId) {
+        byte[] session = sessionId != null ? sessionId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if(session.length > MAX_SESSION_LENGTH)
+            throw new IllegalArgumentException("Session id is "+session.length+
+                    " bytes, the max length is "+MAX_SESSION_LENGTH);
+        return session;
+    }
+
+    synchronized void append(long timestamp, String sessionId, int[] line) throws IOException {
+        byte[] session = checkSessionId(sessionId);
+        byte[] payload = Parser.fromCodePoints(line).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + session.length + payload.length);
+        // the length do not include the length field itself
+        record.putInt(record.capacity() - 4);
+        record.putLong(timestamp);
+        record.putShort((short) session.length);
+        record.put(session);
+        record.put(payload);
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(open.end);
+            out.write(record.array());
+        }
+        open.add(timestamp, record.capacity());
+        if(open.count == BLOCK_RECORDS)
+            closeBlock();
+    }
+
+    /**
+     * @return the entries with a timestamp from (inclusive) to (exclusive), in the order they were stored.
+     * The blocks are read when the iterator reach them.
+     */
+    synchronized Iterable<HistoryEntry> range(long from, long to) {
+        List<Block> matching = new ArrayList<>();
+        for(Block block : snapshot())
+            if(block.count > 0 && block.max >= from && block.min < to)
+                matching.add(block);
+        return () -> new RangeIterator(matching, from, to);
+    }
+
+    /**
+     * @return the last (max) entries stored
+     */
+    synchronized List<HistoryEntry> last(int max) throws IOException {
+        List<Block> all = snapshot();
+        List<List<HistoryEntry>> read = new ArrayList<>();
+        int count = 0;
+        for(int i = all.size() - 1; i >= 0 && count < max; i--) {
+            List<HistoryEntry> entries = readBlock(all.get(i));
+            read.add(entries);
+            count += entries.size();
+        }
+        Collections.reverse(read);
+        List<HistoryEntry> last = new ArrayList<>(count);
+        for(List<HistoryEntry> entries : read)
+            last.addAll(entries);
+        return last.subList(Math.max(0, last.size() - max), last.size());
+    }
+
+    private List<Block> snapshot() {
+        List<Block> all = new ArrayList<>(blocks.size() + 1);
+        all.addAll(blocks);
+        all.add(open.copy());
+        return all;
+    }
+
+    private void load() throws IOException {
+        if(!file.exists() || file.length() < HEADER_SIZE) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(0);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            indexFile.delete();
+            open = new Block(HEADER_SIZE);
+            return;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if(in.readInt() != MAGIC)
+                throw new IOException(file + " is not a history file");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported history file version: " + version);
+        }
+        if(!readIndex()) {
+            blocks.clear();
+            indexFile.delete();
+        }
+        open = new Block(blocks.isEmpty() ? HEADER_SIZE : blocks.get(blocks.size() - 1).end);
+        scanOpenBlock();
+    }
+
+    /**
+     * @return false if the index do not match the history file
+     */
+    private boolean readIndex() throws IOException {
+        if(!indexFile.exists())
+            return false;
+        long expected = HEADER_SIZE;
+        try (RandomAccessFile in = new RandomAccessFile(indexFile, "r")) {
+            long entries = in.length() / INDEX_ENTRY_SIZE;
+            for(long i = 0; i < entries; i++) {
+                Block block = new Block(in.readLong());
+                block.end = in.readLong();
+                block.min = in.readLong();
+                block.max = in.readLong();
+                block.count = in.readInt();
+                if(block.offset != expected || block.end > file.length())
+                    return false;
+                expected = block.end;
+                blocks.add(block);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the records after the last indexed block, closing blocks as they fill up.
+     * A partially written record at the end of the file is removed.
+     */
+    private void scanOpenBlock() throws IOException {
+        long length = file.length();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            while(open.end + 4 <= length) {
+                in.seek(open.end);
+                int size = in.readInt();
+                if(size < RECORD_HEADER_SIZE - 4 || open.end + 4 + size > length)
+                    break;
+                open.add(in.readLong(), 4 + size);
+                if(open.count == BLOCK_RECORDS)
+                    closeBlock();
+            }
+        }
+        if(open.end < length) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(open.end);
+            }
+        }
+    }
+
+    private void closeBlock() throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(indexFile, "rw")) {
+            out.seek((long) blocks.size() * INDEX_ENTRY_SIZE);
+            out.writeLong(open.offset);
+            out.writeLong(open.end);
+            out.writeLong(open.min);
+            out.writeLong(open.max);
+            out.writeInt(open.count);
+        }
+        blocks.add(open);
+        open = new Block(open.end);
+    }
+
+    private List<HistoryEntry> readBlock(Block block) throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>(block.count);
+        if(block.count == 0)
+            return entries;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (block.end - block.offset));
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(block.offset);
+            in.readFully(buffer.array());
+        }
+        while(buffer.remaining() > 0) {
+            int size = buffer.getInt();
+            int next = buffer.position() + size;
+            long timestamp = buffer.getLong();
+            int sessionLength = buffer.getShort() & 0xFFFF;
+            String session = new String(buffer.array(), buffer.position(), sessionLength, StandardCharsets.UTF_8);
+            int payloadOffset = buffer.position() + sessionLength;
+            String line = new String(buffer.array(), payloadOffset, next - payloadOffset, StandardCharsets.UTF_8);
+            entries.add(new HistoryEntry(timestamp, session, Parser.toCodePoints(line)));
+            buffer.position(next);
+        }
+        return entries;
+    }
+
+    private static final class Block {
+        private final long offset;
+        private long end;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private int count;
+
+        private Block(long offset) {
+            this.offset = offset;
+            this.end = offset;
+        }
+
+        private void add(long timestamp, int size) {
+            min = Math.min(min, timestamp);
+            max = Math.max(max, timestamp);
+            end += size;
+            count++;
+        }
+
+        private Block copy() {
+            Block copy = new Block(offset);
+            copy.end = end;
+            copy.min = min;
+            copy.max = max;
+            copy.count = count;
+            return copy;
+        }
+    }
+
+    private final class RangeIterator implements Iterator<HistoryEntry> {
+        private final Iterator<Block> blocks;
+        private final long from;
+        private final long to;
+        private Iterator<HistoryEntry> current = Collections.emptyIterator();
+        private HistoryEntry next;
+
+        private RangeIterator(List<Block> blocks, long from, long to) {
+            this.blocks = blocks.iterator();
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(next == null) {
+                if(current.hasNext()) {
+                    HistoryEntry entry = current.next();
+                    if(entry.getTimestamp() >= from && entry.getTimestamp() < to)
+                        next = entry;
+                }
+                else if(blocks.hasNext()) {
+                    try {
+                        current = readBlock(blocks.next()).iterator();
+                    }
+                    catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                else
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public HistoryEntry next() {
+            if(!hasNext())
+                throw new NoSuchElementException();
+            HistoryEntry entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
@@ -23,7 +23,9 @@ import org.aesh.readline.util.Parser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A simple in-memory history implementation
@@ -39,20 +41,63 @@ public class InMemoryHistory extends History {
     private SearchDirection searchDirection = SearchDirection.REVERSE;
     private final int maxSize;
     private int[] lastSearchArgument;
+    // content index, the value is the key itself to give access to the stored entry and count
+    private final Map<Entry, Entry> index;
+    private boolean eraseDuplicates;
+    // created on the first prefix search
+    private PrefixIndex prefixIndex;
 
     public InMemoryHistory() {
         this(500);
     }
 
     public InMemoryHistory(int maxSize) {
+        this(maxSize, new ArrayList<>(), true);
+    }
+
+    /**
+     * @param maxSize max number of entries, -1 for no limit
+     * @param historyList the list the entries are stored in
+     * @param indexed if true, keep a hash index over the entries for exact lookups.
+     *                the index reference the pushed arrays, if false find and
+     *                erase duplicates will do a linear scan instead
+     */
+    protected InMemoryHistory(int maxSize, List<int[]> historyList, boolean indexed) {
         if(maxSize == -1)
             this.maxSize = Integer.MAX_VALUE;
         else
             this.maxSize = maxSize;
-        historyList = new ArrayList<>();
+        this.historyList = historyList;
+        this.index = indexed ? new HashMap<>() : null;
         current = new int[]{};
     }
 
+    /**
+     * When enabled, pushing an entry that already exist will remove the old entry
+     * and add it to the end, similar to bash HISTCONTROL=erasedups.
+     * Enabling it will also remove the existing duplicates, keeping the latest of them.
+     *
+     * @param eraseDuplicates erase duplicates
+     */
+    public void setEraseDuplicates(boolean eraseDuplicates) {
+        if(eraseDuplicates && !this.eraseDuplicates) {
+            List<int[]> entries = new ArrayList<>(historyList);
+            clearEntries();
+            for(int[] entry : entries) {
+                int existing = lastIndexOf(entry);
+                if(existing >= 0)
+                    removeEntry(existing);
+                addEntry(entry);
+            }
+            lastId = size();
+        }
+        this.eraseDuplicates = eraseDuplicates;
+    }
+
+    public boolean isEraseDuplicates() {
+        return eraseDuplicates;
+    }
+
     @Override
     public void push(int[] entry) {
         if(isEnabled() && entry != null && !Parser.isTrimmedArrayEmpty(entry)) {
@@ -64,24 +109,102 @@ public class InMemoryHistory extends History {
                return;
             }
 
+            if(eraseDuplicates) {
+                int existing = lastIndexOf(entry);
+                if(existing >= 0)
+                    removeEntry(existing);
+            }
+
             if(historyList.size() >= maxSize) {
-                historyList.remove(0);
+                removeEntry(0);
             }
 
-            historyList.add(entry);
+            addEntry(entry);
             lastId = size();
         }
     }
 
     @Override
     public int[] find(int[] search) {
-        int index = historyList.indexOf(search);
-        if(index >= 0) {
-            return get(index);
+        if(search == null)
+            return null;
+        if(index != null) {
+            Entry entry = index.get(new Entry(search));
+            return entry != null ? entry.line : null;
         }
+        int i = lastIndexOf(search);
+        if(i >= 0)
+            return get(i);
+        else
+            return null;
+    }
+
+    @Override
+    public int[] searchPrefix(int[] prefix, SearchDirection direction) {
+        if(prefix == null || size() == 0)
+            return null;
+        if(prefixIndex == null)
+            prefixIndex = new PrefixIndex(historyList);
+        int found;
+        if(direction == SearchDirection.REVERSE)
+            found = prefixIndex.previous(prefix, Math.min(lastId, size()));
+        else if(lastId < size())
+            found = prefixIndex.next(prefix, lastId);
         else
+            found = -1;
+
+        if(found < 0) {
+            //a forward search that run out of entries is back at the edited line
+            if(direction == SearchDirection.FORWARD)
+                lastId = size();
             return null;
+        }
+        lastId = found;
+        return get(lastId);
+    }
+
+    @Override
+    public boolean isFetchAtEnd() {
+        return lastId >= size();
+    }
 
+    private void addEntry(int[] entry) {
+        historyList.add(entry);
+        if(index != null)
+            index.computeIfAbsent(new Entry(entry), k -> k).count++;
+        if(prefixIndex != null)
+            prefixIndex.added(entry);
+    }
+
+    private void removeEntry(int i) {
+        if(prefixIndex != null)
+            prefixIndex.remove(i);
+        int[] removed = historyList.remove(i);
+        if(index != null) {
+            Entry entry = index.get(new Entry(removed));
+            if(entry != null && --entry.count == 0)
+                index.remove(entry);
+        }
+    }
+
+    private void clearEntries() {
+        historyList.clear();
+        prefixIndex = null;
+        if(index != null)
+            index.clear();
+    }
+
+    /**
+     * @return index of the latest entry equal to the given line, -1 if there are none
+     */
+    private int lastIndexOf(int[] line) {
+        if(index != null && !index.containsKey(new Entry(line)))
+            return -1;
+        // duplicates are usually recent, search from the end
+        for(int i = historyList.size() - 1; i >= 0; i--)
+            if(Arrays.equals(historyList.get(i), line))
+                return i;
+        return -1;
     }
 
     @Override
@@ -195,7 +318,7 @@ public class InMemoryHistory extends History {
     @Override
     public void clear() {
         lastId = 0;
-        historyList.clear();
+        clearEntries();
         current = new int[]{};
     }
 
@@ -203,4 +326,29 @@ public class InMemoryHistory extends History {
     public void stop() {
         //does nothing for in-memory atm
     }
+
+    /**
+     * Hash key for an entry, compared by content
+     */
+    private static final class Entry {
+        private final int[] line;
+        private final int hash;
+        private int count;
+
+        private Entry(int[] line) {
+            this.line = line;
+            this.hash = Arrays.hashCode(line);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Entry && hash == ((Entry) o).hash &&
+                    Arrays.equals(line, ((Entry) o).line));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted index over the history entries used for prefix searches.
+ *
+ * Each entry get an id when it is added, ids are increasing so they also give the history order.
+ * The index keep the ids sorted by entry content, and by id when the content is equal, so all
+ * entries starting with a prefix are found with two binary searches.
+ * The ids are never renumbered, removing an entry only remove its id. The position of an entry
+ * in the history is found with a binary search in the ids kept in history order.
+ * The ids matching the last searched prefix are cached in history order, the following
+ * searches with the same prefix is a binary search in that cache.
+ */
+class PrefixIndex {
+
+    private final List<int[]> entries;
+    // ids sorted by content, then by id
+    private int[] order;
+    private int size;
+    // ids in history order, ids[head + i] is the id of entry i
+    private int[] ids;
+    private int head;
+    private int nextId;
+
+    private int[] cachedPrefix;
+    private int[] candidates;
+    private int candidatesSize;
+
+    PrefixIndex(List<int[]> entries) {
+        this.entries = entries;
+        size = entries.size();
+        Integer[] sorted = new Integer[size];
+        for(int i = 0; i < size; i++)
+            sorted[i] = i;
+        // sort is stable, equal entries keep their history order
+        Arrays.sort(sorted, (a, b) -> compare(entries.get(a), entries.get(b)));
+        order = new int[Math.max(16, size)];
+        ids = new int[order.length];
+        for(int i = 0; i < size; i++) {
+            order[i] = sorted[i];
+            ids[i] = i;
+        }
+        nextId = size;
+    }
+
+    /**
+     * Must be called after an entry is added to the end of the entries
+     */
+    void added(int[] line) {
+        if(nextId == Integer.MAX_VALUE)
+            rebase();
+        int id = nextId++;
+        if(head + size == ids.length)
+            makeRoom();
+        ids[head + size] = id;
+
+        // the new id is the largest, so it goes after the equal entries
+        int position = upperBound(line);
+        if(size == order.length)
+            order = Arrays.copyOf(order, size * 2);
+        System.arraycopy(order, position, order, position + 1, size - position);
+        order[position] = id;
+        size++;
+
+        if(cachedPrefix != null && Parser.arrayStartsWith(line, cachedPrefix)) {
+            if(candidatesSize == candidates.length)
+                candidates = Arrays.copyOf(candidates, candidatesSize * 2);
+            candidates[candidatesSize++] = id;
+        }
+    }
+
+    /**
+     * Must be called before the entry at the given position is removed from the entries
+     */
+    void remove(int index) {
+        int id = ids[head + index];
+        int[] line = entries.get(index);
+        int position = Arrays.binarySearch(order, lowerBound(line), upperBound(line), id);
+        System.arraycopy(order, position + 1, order, position, size - position - 1);
+        // removing the oldest entry is the common case, it is only a move of head
+        if(index == 0)
+            head++;
+        else
+            System.arraycopy(ids, head + index + 1, ids, head + index, size - index - 1);
+        size--;
+
+        if(cachedPrefix != null) {
+            int candidate = Arrays.binarySearch(candidates, 0, candidatesSize, id);
+            if(candidate >= 0) {
+                System.arraycopy(candidates, candidate + 1, candidates, candidate, candidatesSize - candidate - 1);
+                candidatesSize--;
+            }
+        }
+    }
+
+    /**
+     * @return the position of the latest entry before the given position that starts with the prefix,
+     *         -1 if there are none
+     */
+    int previous(int[] prefix, int before) {
+        updateCandidates(prefix);
+        int bound = before < size ? ids[head + Math.max(0, before)] : nextId;
+        int position = lowerBound(candidates, candidatesSize, bound);
+        return position > 0 ? positionOf(candidates[position - 1]) : -1;
+    }
+
+    /**
+     * @return the position of the first entry after the given position that starts with the prefix,
+     *         -1 if there are none
+     */
+    int next(int[] prefix, int after) {
+        if(after + 1 >= size)
+            return -1;
+        updateCandidates(prefix);
+        int bound = ids[head + Math.max(0, after + 1)];
+        int position = lowerBound(candidates, candidatesSize, bound);
+        return position < candidatesSize ? positionOf(candidates[position]) : -1;
+    }
+
+    private void updateCandidates(int[] prefix) {
+        if(cachedPrefix != null && Arrays.equals(cachedPrefix, prefix))
+            return;
+        int from = lowerBound(prefix);
+        int to = prefixUpperBound(prefix, from);
+        candidatesSize = to - from;
+        if(candidates == null || candidates.length < candidatesSize)
+            candidates = new int[Math.max(16, candidatesSize)];
+        System.arraycopy(order, from, candidates, 0, candidatesSize);
+        Arrays.sort(candidates, 0, candidatesSize);
+        cachedPrefix = prefix.clone();
+    }
+
+    /**
+     * @return the position in the history of the entry with the given id
+     */
+    private int positionOf(int id) {
+        return Arrays.binarySearch(ids, head, head + size, id) - head;
+    }
+
+    private int[] line(int id) {
+        return entries.get(positionOf(id));
+    }
+
+    private void makeRoom() {
+        if(head > 0) {
+            System.arraycopy(ids, head, ids, 0, size);
+            head = 0;
+        }
+        else
+            ids = Arrays.copyOf(ids, ids.length * 2);
+    }
+
+    /**
+     * Renumber the ids from zero, only needed when the ids are about to overflow
+     */
+    private void rebase() {
+        int first = ids[head];
+        for(int i = 0; i < size; i++) {
+            order[i] -= first;
+            ids[head + i] -= first;
+        }
+        for(int i = 0; i < candidatesSize; i++)
+            candidates[i] -= first;
+        nextId -= first;
+    }
+
+    /**
+     * @return first position in order where the entry is equal or greater than line
+     */
+    private int lowerBound(int[] line) {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(compare(line(order[mid]), line) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return first position in order where the entry is greater than line
+     */
+    private int upperBound(int[] line) {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(compare(line(order[mid]), line) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return first position in order, starting at from, where the entry do not start with prefix
+     */
+    private int prefixUpperBound(int[] prefix, int from) {
+        int low = from;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(Parser.arrayStartsWith(line(order[mid]), prefix))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+    private static int lowerBound(int[] values, int length, int value) {
+        int low = 0;
+        int high = length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(values[mid] < value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int compare(int[] a, int[] b) {
+        int length = Math.min(a.length, b.length);
+        for(int i = 0; i < length; i++)
+            if(a[i] != b[i])
+                return Integer.compare(a[i], b[i]);
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread safe history store that can be shared between many concurrent sessions,
+ * eg. all connections served by a ssh or telnet server.
+ *
+ * The entries are kept once, in a bounded ring buffer. An append reserve a sequence number
+ * with an atomic counter and publish the entry in its own slot, no locks are taken and a writer
+ * never wait for another. Readers skip slots that are not written yet, or that still hold an
+ * older entry.
+ * Each session get its own {@link History} view with {@link #newSession()}, the view
+ * keep its own navigation cursor and search state.
+ * A live session see entries pushed by other sessions right away, otherwise it only
+ * see the entries that existed when it was created and its own entries.
+ */
+public class SharedHistory {
+
+    // cursor position after the last entry
+    private static final long END = Long.MAX_VALUE;
+
+    private final AtomicReferenceArray<Entry> ring;
+    private final int maxSize;
+    // next sequence number to hand out
+    private final AtomicLong reserved = new AtomicLong();
+    // entries with a lower sequence number have been cleared
+    private volatile long cleared;
+    private final AtomicInteger sessionIds = new AtomicInteger();
+
+    public SharedHistory() {
+        this(500);
+    }
+
+    public SharedHistory(int maxSize) {
+        if(maxSize < 1)
+            throw new IllegalArgumentException("SharedHistory need a positive max size, got: "+maxSize);
+        this.maxSize = maxSize;
+        ring = new AtomicReferenceArray<>(maxSize);
+    }
+
+    /**
+     * @return a new live session, it will see entries pushed by other sessions right away
+     */
+    public History newSession() {
+        return newSession(true);
+    }
+
+    /**
+     * @param live if true, entries pushed by other sessions are visible right away.
+     *             if false, only the entries stored before the session was created and
+     *             the entries pushed by the session itself are visible
+     * @return a new session
+     */
+    public History newSession(boolean live) {
+        return new Session(sessionIds.incrementAndGet(), live, reserved.get());
+    }
+
+    /**
+     * @return number of entries currently stored, entries that are still being pushed are not counted
+     */
+    public int size() {
+        long end = reserved.get();
+        int size = 0;
+        for(long seq = oldest(end); seq < end; seq++) {
+            if(entry(seq) != null)
+                size++;
+        }
+        return size;
+    }
+
+    /**
+     * @return a copy of all the entries currently stored
+     */
+    public List<int[]> getAll() {
+        long end = reserved.get();
+        List<int[]> all = new ArrayList<>((int) (end - oldest(end)));
+        for(long seq = oldest(end); seq < end; seq++) {
+            Entry entry = entry(seq);
+            if(entry != null)
+                all.add(entry.line);
+        }
+        return all;
+    }
+
+    /**
+     * Remove all entries, for all sessions.
+     */
+    public void clear() {
+        cleared = reserved.get();
+    }
+
+    private void push(int session, int[] line) {
+        long seq = reserved.getAndIncrement();
+        Entry entry = new Entry(seq, session, line);
+        int index = index(seq);
+        // a slow writer must not overwrite a newer entry that have wrapped around the ring
+        for(Entry current = ring.get(index); current == null || current.seq < seq; current = ring.get(index)) {
+            if(ring.compareAndSet(index, current, entry))
+                return;
+        }
+    }
+
+    /**
+     * Reserve a sequence number without publishing an entry, like a push that have not completed.
+     * Only used by the tests.
+     */
+    void reserveSlot() {
+        reserved.getAndIncrement();
+    }
+
+    private long oldest(long end) {
+        return Math.max(cleared, end - maxSize);
+    }
+
+    /**
+     * @return the entry with the given sequence number, or null if it is not written yet
+     *         or have been overwritten
+     */
+    private Entry entry(long seq) {
+        Entry entry = ring.get(index(seq));
+        if(entry != null && entry.seq == seq)
+            return entry;
+        return null;
+    }
+
+    private int index(long seq) {
+        return (int) (seq % maxSize);
+    }
+
+    private static final class Entry {
+        private final long seq;
+        private final int session;
+        private final int[] line;
+
+        private Entry(long seq, int session, int[] line) {
+            this.seq = seq;
+            this.session = session;
+            this.line = line;
+        }
+    }
+
+    /**
+     * A view of the shared entries, the cursor is stored as a sequence number so
+     * it is not affected when other sessions append or when old entries are evicted.
+     * A session is not thread safe itself, it should only be used by one Readline.
+     */
+    private final class Session extends History {
+
+        private final int id;
+        private final boolean live;
+        private final long snapshot;
+        private long cursor;
+        private int[] current = new int[]{};
+        private SearchDirection searchDirection = SearchDirection.REVERSE;
+        private int[] lastSearchArgument;
+
+        private Session(int id, boolean live, long snapshot) {
+            this.id = id;
+            this.live = live;
+            this.snapshot = snapshot;
+            this.cursor = END;
+        }
+
+        private boolean isVisible(Entry entry) {
+            return entry != null && (live || entry.seq < snapshot || entry.session == id);
+        }
+
+        private Entry previousVisible(long from) {
+            long end = reserved.get();
+            long oldest = oldest(end);
+            for(long seq = Math.min(from, end) - 1; seq >= oldest; seq--) {
+                Entry entry = entry(seq);
+                if(isVisible(entry))
+                    return entry;
+            }
+            return null;
+        }
+
+        private Entry nextVisible(long from) {
+            long end = reserved.get();
+            if(from >= end)
+                return null;
+            for(long seq = Math.max(from + 1, oldest(end)); seq < end; seq++) {
+                Entry entry = entry(seq);
+                if(isVisible(entry))
+                    return entry;
+            }
+            return null;
+        }
+
+        @Override
+        public void push(int[] entry) {
+            if(isEnabled() && entry != null && !Parser.isTrimmedArrayEmpty(entry)) {
+                // Don't add repeated lines to the history
+                Entry last = previousVisible(END);
+                if(last == null || !Arrays.equals(last.line, entry))
+                    SharedHistory.this.push(id, entry);
+                cursor = END;
+            }
+        }
+
+        @Override
+        public int[] find(int[] search) {
+            for(Entry entry = previousVisible(END); entry != null; entry = previousVisible(entry.seq))
+                if(Arrays.equals(entry.line, search))
+                    return entry.line;
+            return null;
+        }
+
+        /**
+         * The index only count the visible entries, the slots of entries that are still being
+         * pushed are skipped the same way as in {@link #size()} and {@link SharedHistory#getAll()}.
+         */
+        @Override
+        public int[] get(int index) {
+            int count = 0;
+            for(Entry entry = nextVisible(-1); entry != null; entry = nextVisible(entry.seq)) {
+                if(count++ == index)
+                    return entry.line;
+            }
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+count);
+        }
+
+        @Override
+        public int size() {
+            if(live)
+                return SharedHistory.this.size();
+            int count = 0;
+            for(Entry entry = nextVisible(-1); entry != null; entry = nextVisible(entry.seq))
+                count++;
+            return count;
+        }
+
+        @Override
+        public void setSearchDirection(SearchDirection direction) {
+            if(searchDirection != direction) {
+                searchDirection = direction;
+                lastSearchArgument = null;
+                cursor = -1;
+            }
+        }
+
+        @Override
+        public SearchDirection getSearchDirection() {
+            return searchDirection;
+        }
+
+        @Override
+        public int[] getPreviousFetch() {
+            Entry entry = previousVisible(cursor);
+            if(entry == null) {
+                // we're at the first entry, or it have been evicted
+                entry = nextVisible(cursor - 1);
+                if(entry == null)
+                    entry = nextVisible(-1);
+                if(entry == null)
+                    return new int[]{};
+            }
+            cursor = entry.seq;
+            return entry.line;
+        }
+
+        @Override
+        public int[] getNextFetch() {
+            Entry entry = nextVisible(cursor);
+            if(entry != null) {
+                cursor = entry.seq;
+                return entry.line;
+            }
+            if(nextVisible(-1) == null)
+                return null;
+            cursor = END;
+            return getCurrent();
+        }
+
+        @Override
+        public int[] search(int[] search) {
+            if(searchDirection == SearchDirection.REVERSE)
+                return searchReverse(search);
+            else
+                return searchForward(search);
+        }
+
+        @Override
+        public int[] searchPrefix(int[] prefix, SearchDirection direction) {
+            boolean reverse = direction == SearchDirection.REVERSE;
+            Entry entry = reverse ? previousVisible(cursor) : nextVisible(cursor);
+            for(; entry != null; entry = reverse ? previousVisible(entry.seq) : nextVisible(entry.seq)) {
+                if(Parser.arrayStartsWith(entry.line, prefix)) {
+                    cursor = entry.seq;
+                    return entry.line;
+                }
+            }
+            //a forward search that run out of entries is back at the edited line
+            if(!reverse)
+                cursor = END;
+            return null;
+        }
+
+        @Override
+        public boolean isFetchAtEnd() {
+            return cursor == END;
+        }
+
+        private int[] searchReverse(int[] search) {
+            Entry last = previousVisible(END);
+            if(last == null)
+                return new int[]{};
+            Entry first = nextVisible(-1);
+            Entry entry;
+            if(cursor <= first.seq || cursor > last.seq)
+                entry = last;
+            else if(lastSearchArgument != null && Arrays.equals(lastSearchArgument, search))
+                entry = previousVisible(cursor);
+            else
+                entry = nextVisible(cursor - 1);
+
+            for(; entry != null; entry = previousVisible(entry.seq)) {
+                if(Parser.arrayContains(entry.line, search)) {
+                    cursor = entry.seq;
+                    lastSearchArgument = search;
+                    return entry.line;
+                }
+            }
+            cursor = -1;
+            return null;
+        }
+
+        private int[] searchForward(int[] search) {
+            Entry entry;
+            if(cursor >= reserved.get())
+                entry = nextVisible(-1);
+            else if(lastSearchArgument != null && Arrays.equals(lastSearchArgument, search))
+                entry = nextVisible(cursor);
+            else
+                entry = nextVisible(cursor - 1);
+
+            for(; entry != null; entry = nextVisible(entry.seq)) {
+                if(Parser.arrayContains(entry.line, search)) {
+                    cursor = entry.seq;
+                    lastSearchArgument = search;
+                    return entry.line;
+                }
+            }
+            cursor = END;
+            return null;
+        }
+
+        @Override
+        public void setCurrent(int[] line) {
+            this.current = line;
+        }
+
+        @Override
+        public int[] getCurrent() {
+            return current;
+        }
+
+        @Override
+        public List<int[]> getAll() {
+            if(live)
+                return SharedHistory.this.getAll();
+            List<int[]> all = new ArrayList<>();
+            for(Entry entry = nextVisible(-1); entry != null; entry = nextVisible(entry.seq))
+                all.add(entry.line);
+            return all;
+        }
+
+        /**
+         * Note that the entries are shared, this will clear the history of all sessions.
+         */
+        @Override
+        public void clear() {
+            SharedHistory.this.clear();
+            cursor = END;
+            current = new int[]{};
+        }
+
+        @Override
+        public void stop() {
+            //the entries are owned by SharedHistory, nothing to do
+        }
+    }
+}
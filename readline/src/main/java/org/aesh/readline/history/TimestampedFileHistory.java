@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.LoggerUtil;
+import org.aesh.readline.util.Parser;
+import org.aesh.terminal.utils.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * History backed by a binary, append only, history file where each entry is stored
+ * with its timestamp and session id.
+ * Every pushed entry is written to the file right away, also repeated entries that are
+ * not added to the in-memory history. At init the last max size entries are read from the file.
+ * The file is never truncated, {@link #clear()} only clear the in-memory entries.
+ *
+ * Use {@link #getEntries(long, long)} to read the entries stored in a time range and
+ * {@link #exportText(File)} to write the entries in the text format used by {@link FileHistory}.
+ */
+public class TimestampedFileHistory extends InMemoryHistory {
+
+    private static final Logger LOGGER = LoggerUtil.getLogger(TimestampedFileHistory.class.getName());
+
+    private final HistoryLog log;
+    private final String sessionId;
+    private final boolean logging;
+
+    public TimestampedFileHistory(File file, int maxSize) {
+        this(file, maxSize, null, false);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the session id is longer than 65535 bytes in UTF-8
+     */
+    public TimestampedFileHistory(File file, int maxSize, String sessionId, boolean logging) {
+        super(maxSize);
+        HistoryLog.checkSessionId(sessionId);
+        this.sessionId = sessionId;
+        this.logging = logging;
+        HistoryLog historyLog = null;
+        try {
+            historyLog = new HistoryLog(file);
+            for(HistoryEntry entry : historyLog.last(maxSize == -1 ? Integer.MAX_VALUE : maxSize))
+                super.push(entry.getLine());
+        }
+        catch(IOException e) {
+            if(logging)
+                LOGGER.log(Level.WARNING, "Failed to read from history file, ", e);
+        }
+        log = historyLog;
+    }
+
+    @Override
+    public void push(int[] entry) {
+        push(entry, System.currentTimeMillis());
+    }
+
+    /**
+     * @param entry entry
+     * @param timestamp time the entry was executed, in milliseconds since the epoch
+     */
+    public void push(int[] entry, long timestamp) {
+        if(isEnabled() && entry != null && !Parser.isTrimmedArrayEmpty(entry) && log != null) {
+            try {
+                log.append(timestamp, sessionId, entry);
+            }
+            catch(IOException e) {
+                if(logging)
+                    LOGGER.log(Level.WARNING, "Failed to write to history file, ", e);
+            }
+        }
+        super.push(entry);
+    }
+
+    @Override
+    public boolean supportsTimestamps() {
+        return log != null;
+    }
+
+    /**
+     * Only the blocks of the history file that overlap the range are read,
+     * and they are read while iterating.
+     */
+    @Override
+    public Iterable<HistoryEntry> getEntries(long from, long to) {
+        if(log == null)
+            return super.getEntries(from, to);
+        return log.range(from, to);
+    }
+
+    /**
+     * Write all the entries in the history file to the given file, one line pr entry.
+     *
+     * @param file text file
+     * @throws IOException io
+     */
+    public void exportText(File file) throws IOException {
+        try (FileWriter fw = new FileWriter(file)) {
+            for(HistoryEntry entry : getEntries(Long.MIN_VALUE, Long.MAX_VALUE))
+                fw.write(Parser.fromCodePoints(entry.getLine()) + (Config.getLineSeparator()));
+        }
+    }
+}
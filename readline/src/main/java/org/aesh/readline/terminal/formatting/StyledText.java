@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.terminal.formatting;
+
+import java.util.Arrays;
+
+/**
+ * Text where each character have its own {@link TerminalStyle}.
+ *
+ * The text is stored as a code point array and an array with the id of the style of each
+ * code point. When it is rendered an escape sequence is only written where the style change,
+ * so a run of characters with the same style costs nothing extra.
+ */
+public class StyledText {
+
+    private int[] codePoints;
+    private int[] styles;
+    private int size;
+
+    public StyledText() {
+        this(16);
+    }
+
+    public StyledText(int capacity) {
+        codePoints = new int[Math.max(1, capacity)];
+        styles = new int[codePoints.length];
+    }
+
+    public StyledText append(int codePoint, TerminalStyle style) {
+        if(size == codePoints.length) {
+            codePoints = Arrays.copyOf(codePoints, size * 2);
+            styles = Arrays.copyOf(styles, size * 2);
+        }
+        codePoints[size] = codePoint;
+        styles[size] = style.getId();
+        size++;
+        return this;
+    }
+
+    public StyledText append(String text, TerminalStyle style) {
+        for(int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            append(codePoint, style);
+            i += Character.charCount(codePoint);
+        }
+        return this;
+    }
+
+    public StyledText append(TerminalCharacter character) {
+        char c = character.getCharacter();
+        TerminalStyle style = character.getTerminalStyle();
+        // join a surrogate pair that is split over two characters
+        if(Character.isLowSurrogate(c) && size > 0 && styles[size - 1] == style.getId() &&
+                Character.isHighSurrogate((char) codePoints[size - 1]))
+            codePoints[size - 1] = Character.toCodePoint((char) codePoints[size - 1], c);
+        else
+            append(c, style);
+        return this;
+    }
+
+    public StyledText append(TerminalString string) {
+        if(string.isIgnoreRendering())
+            return append(string.getCharacters(), TerminalStyle.DEFAULT);
+        else
+            return append(string.getCharacters(), string.getTerminalStyle());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int codePointAt(int index) {
+        checkIndex(index);
+        return codePoints[index];
+    }
+
+    public TerminalStyle styleAt(int index) {
+        checkIndex(index);
+        return TerminalStyle.byId(styles[index]);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the code points without any escape sequences
+     */
+    public int[] getCodePoints() {
+        return Arrays.copyOf(codePoints, size);
+    }
+
+    /**
+     * The first code point is preceded by the full escape sequence of its style, after that a
+     * sequence is only written when the style change. The style of the last run is not reset.
+     *
+     * @return the code points with the escape sequences
+     */
+    public int[] render() {
+        int length = size;
+        TerminalStyle prev = null;
+        for(int i = 0; i < size; i++) {
+            if(i == 0 || styles[i] != styles[i - 1]) {
+                TerminalStyle style = TerminalStyle.byId(styles[i]);
+                length += prev == null ? style.getSGR().length() : style.getSGR(prev).length();
+                prev = style;
+            }
+        }
+
+        int[] output = new int[length];
+        int pos = 0;
+        prev = null;
+        for(int i = 0; i < size; i++) {
+            if(i == 0 || styles[i] != styles[i - 1]) {
+                TerminalStyle style = TerminalStyle.byId(styles[i]);
+                pos = appendSequence(output, pos, prev == null ? style.getSGR() : style.getSGR(prev));
+                prev = style;
+            }
+            output[pos++] = codePoints[i];
+        }
+        return output;
+    }
+
+    /**
+     * Same as {@link #render()}, appended to the builder.
+     */
+    public void render(StringBuilder builder) {
+        TerminalStyle prev = null;
+        for(int i = 0; i < size; i++) {
+            if(i == 0 || styles[i] != styles[i - 1]) {
+                TerminalStyle style = TerminalStyle.byId(styles[i]);
+                builder.append(prev == null ? style.getSGR() : style.getSGR(prev));
+                prev = style;
+            }
+            builder.appendCodePoint(codePoints[i]);
+        }
+    }
+
+    private static int appendSequence(int[] output, int pos, String sequence) {
+        // escape sequences are ascii, one char is one code point
+        for(int i = 0; i < sequence.length(); i++)
+            output[pos++] = sequence.charAt(i);
+        return pos;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(size);
+        render(builder);
+        return builder.toString();
+    }
+}
@@ -19,8 +19,6 @@
  */
 package org.aesh.readline.terminal.formatting;
 
-import org.aesh.terminal.utils.ANSI;
-
 /**
  * Value object that describe how a terminal character should be displayed
  *
@@ -29,20 +27,22 @@ import org.aesh.terminal.utils.ANSI;
 public class TerminalCharacter {
 
     private char character;
+    // null until it is fetched with getStyle()
     private TerminalTextStyle style;
-    private TerminalColor color;
+    private final TerminalColor color;
+    private TerminalStyle terminalStyle;
     private String cache;
 
     public TerminalCharacter(char c) {
-        this(c, new TerminalTextStyle());
+        this(c, TerminalColor.DEFAULT, (TerminalTextStyle) null);
     }
 
     public TerminalCharacter(char c, TerminalTextStyle style) {
-        this(c, new TerminalColor(), style);
+        this(c, TerminalColor.DEFAULT, style);
     }
 
     public TerminalCharacter(char c, TerminalColor color) {
-        this(c, color, new TerminalTextStyle());
+        this(c, color, (TerminalTextStyle) null);
     }
 
     public TerminalCharacter(char c, TerminalColor color,
@@ -54,7 +54,7 @@ public class TerminalCharacter {
                              TerminalTextStyle style) {
         this.character = c;
         this.style = style;
-        this.color = color;
+        this.color = color != null ? color : TerminalColor.DEFAULT;
     }
 
     public char getCharacter() {
@@ -66,9 +66,24 @@ public class TerminalCharacter {
     }
 
     public TerminalTextStyle getStyle() {
+        if(style == null)
+            style = new TerminalTextStyle();
         return style;
     }
 
+    /**
+     * @return the interned style of the character
+     */
+    public TerminalStyle getTerminalStyle() {
+        TerminalStyle current = terminalStyle;
+        // the text style can be changed with its setters
+        if(current == null || !current.matches(style)) {
+            current = TerminalStyle.of(style, color);
+            terminalStyle = current;
+            cache = null;
+        }
+        return current;
+    }
 
     /**
      * style, text color, background color
@@ -76,43 +91,21 @@ public class TerminalCharacter {
     public String toString(TerminalCharacter prev) {
         if(equalsIgnoreCharacter(prev))
             return String.valueOf(character);
-        else {
-            StringBuilder builder = new StringBuilder();
-            builder.append(ANSI.START);
-            if(!style.equals(prev.getStyle())) {
-                builder.append(style.getValueComparedToPrev(prev.getStyle()));
-            }
-            if(!this.color.equals(prev.color)) {
-                if(prev.getStyle().isInvert()) {
-                    if(builder.charAt(builder.length()-1) == '[')
-                        builder.append(this.color.toString());
-                    else
-                        builder.append(';').append(this.color.toString());
-                }
-                else {
-                    if(builder.charAt(builder.length()-1) == '[')
-                        builder.append(this.color.toString(prev.color));
-                    else
-                        builder.append(';').append(this.color.toString(prev.color));
-                }
-            }
-
-            builder.append('m');
-            builder.append(getCharacter());
-            return builder.toString();
-        }
+        else
+            return getTerminalStyle().getSGR(prev.getTerminalStyle()) + character;
     }
 
     @Override
     public String toString() {
+        TerminalStyle current = getTerminalStyle();
         if(cache == null) {
-            cache = ANSI.START + style.toString() + ';' + this.color.toString() + 'm' + getCharacter();
+            cache = current.getSGR() + character;
         }
         return cache;
     }
 
     public boolean equalsIgnoreCharacter(TerminalCharacter that) {
-        return style.equals(that.style) && color.equals(that.color);
+        return getTerminalStyle() == that.getTerminalStyle();
     }
 
     @Override
@@ -122,16 +115,14 @@ public class TerminalCharacter {
 
         TerminalCharacter that = (TerminalCharacter) o;
 
-        return style.equals(that.style) &&
-                character == that.character &&
-                color.equals(that.color);
+        return character == that.character &&
+                getTerminalStyle() == that.getTerminalStyle();
     }
 
     @Override
     public int hashCode() {
         int result = (int) character;
-        result = 31 * result + color.hashCode();
-        result = 31 * result + style.hashCode();
+        result = 31 * result + getTerminalStyle().hashCode();
         return result;
     }
 
@@ -28,6 +28,9 @@ import java.io.PrintStream;
  */
 public class TerminalColor {
 
+    // the colors are never changed after construction, so the default can be shared
+    static final TerminalColor DEFAULT = new TerminalColor();
+
     private Color textColor = Color.DEFAULT;
     private int intTextColor = -1;
     private Color backgroundColor = Color.DEFAULT;
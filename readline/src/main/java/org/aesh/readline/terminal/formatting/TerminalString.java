@@ -32,37 +32,35 @@ import java.io.PrintStream;
 public class TerminalString implements Comparable<TerminalString> {
 
     private String characters;
+    // null until it is fetched with getStyle()
     private TerminalTextStyle style;
-    private TerminalColor color;
+    private final TerminalColor color;
+    private TerminalStyle terminalStyle;
     private boolean ignoreRendering;
-    private int ansiLength = 0;
 
     public TerminalString(String chars, TerminalColor color, TerminalTextStyle style) {
         this.characters = chars;
         if(color != null)
             this.color = color;
         else
-            this.color = new TerminalColor();
-        if(style != null)
-            this.style = style;
-        else
-            this.style = new TerminalTextStyle();
+            this.color = TerminalColor.DEFAULT;
+        this.style = style;
     }
 
     public TerminalString(String chars, TerminalColor color) {
-        this(chars, color, new TerminalTextStyle());
+        this(chars, color, null);
     }
 
     public TerminalString(String chars, TerminalTextStyle style) {
-        this(chars, new TerminalColor(), style);
+        this(chars, null, style);
     }
 
     public TerminalString(String chars) {
-        this(chars, new TerminalColor(), new TerminalTextStyle());
+        this(chars, null, null);
     }
 
     public TerminalString(String chars, boolean ignoreRendering) {
-        this(chars, new TerminalColor(), new TerminalTextStyle());
+        this(chars, null, null);
         this.ignoreRendering = ignoreRendering;
     }
 
@@ -83,18 +81,33 @@ public class TerminalString implements Comparable<TerminalString> {
     }
 
     public TerminalTextStyle getStyle() {
+        if(style == null)
+            style = new TerminalTextStyle();
         return style;
     }
 
+    /**
+     * @return the interned style of the string
+     */
+    public TerminalStyle getTerminalStyle() {
+        TerminalStyle current = terminalStyle;
+        // the text style can be changed with its setters
+        if(current == null || !current.matches(style)) {
+            current = TerminalStyle.of(style, color);
+            terminalStyle = current;
+        }
+        return current;
+    }
+
+    public boolean isIgnoreRendering() {
+        return ignoreRendering;
+    }
+
     public int getANSILength() {
         if(ignoreRendering)
             return 0;
-        else {
-            if (ansiLength == 0)
-                ansiLength = ANSI.START.length() + color.getLength() +
-                        style.getLength() + ANSI.RESET.length() +2 ; // ; + m
-            return ansiLength;
-        }
+        else
+            return getTerminalStyle().getSGR().length() + ANSI.RESET.length();
     }
 
     public TerminalString cloneRenderingAttributes(String chars) {
@@ -105,7 +118,7 @@ public class TerminalString implements Comparable<TerminalString> {
     }
 
     public boolean isFormatted() {
-        return  !ignoreRendering && (color.isFormatted() || style.isFormatted());
+        return  !ignoreRendering && (color.isFormatted() || getTerminalStyle().textStyle().isFormatted());
     }
 
     /**
@@ -117,12 +130,13 @@ public class TerminalString implements Comparable<TerminalString> {
         if(equalsIgnoreCharacter(prev))
             return characters;
         else {
+            TerminalTextStyle prevStyle = prev.getTerminalStyle().textStyle();
             StringBuilder builder = new StringBuilder();
             builder.append(ANSI.START)
-                    .append(style.getValueComparedToPrev(prev.getStyle()));
+                    .append(getTerminalStyle().textStyle().getValueComparedToPrev(prevStyle));
 
             if(!this.color.equals(prev.color)) {
-                if(prev.getStyle().isInvert())
+                if(prevStyle.isInvert())
                     builder.append(';').append(this.color.toString());
                 else
                     builder.append(';').append(this.color.toString(prev.color));
@@ -137,9 +151,7 @@ public class TerminalString implements Comparable<TerminalString> {
     public String toString() {
         if(ignoreRendering)
             return characters;
-        return ANSI.START + style.toString() + ';' +
-                this.color.toString() +
-                'm' + getCharacters() + ANSI.RESET;
+        return getTerminalStyle().getSGR() + getCharacters() + ANSI.RESET;
     }
 
     public void write(PrintStream out) {
@@ -147,21 +159,14 @@ public class TerminalString implements Comparable<TerminalString> {
             out.print(characters);
         }
         else {
-            out.print(ANSI.START);
-            out.print(style.toString());
-            out.print(';');
-            this.color.write(out);
-            out.print('m');
+            out.print(getTerminalStyle().getSGR());
             out.print(getCharacters());
         }
     }
 
     public boolean equalsIgnoreCharacter(TerminalString that) {
-        if (style != that.style) return false;
-        if (ignoreRendering != that.ignoreRendering) return false;
-        if (!color.equals(that.color)) return false;
-
-        return true;
+        return ignoreRendering == that.ignoreRendering &&
+                getTerminalStyle() == that.getTerminalStyle();
     }
 
     @Override
@@ -175,18 +180,14 @@ public class TerminalString implements Comparable<TerminalString> {
             return characters.equals(that.characters);
         }
 
-        if (!characters.equals(that.characters)) return false;
-        if (!color.equals(that.color)) return false;
-        if (style != that.style) return false;
-
-        return true;
+        return characters.equals(that.characters) &&
+                getTerminalStyle() == that.getTerminalStyle();
     }
 
     @Override
     public int hashCode() {
         int result = characters.hashCode();
-        result = 31 * result + color.hashCode();
-        result = 31 * result + style.hashCode();
+        result = 31 * result + getTerminalStyle().hashCode();
         return result;
     }
 
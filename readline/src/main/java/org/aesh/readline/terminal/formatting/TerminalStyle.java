@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.terminal.formatting;
+
+import org.aesh.terminal.utils.ANSI;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An interned, immutable combination of a text style and a color.
+ *
+ * Equal styles are the same instance and have a small id, so the style of each character in a
+ * text can be stored as an int and compared with ==.
+ * The escape sequence for the style, and the sequences needed to change to it from other
+ * styles, are only computed once.
+ */
+public final class TerminalStyle {
+
+    private static final Map<TerminalStyle, TerminalStyle> STYLES = new ConcurrentHashMap<>();
+    private static volatile TerminalStyle[] byId = new TerminalStyle[16];
+
+    public static final TerminalStyle DEFAULT = of(null, null);
+
+    private final int id;
+    private final int flags;
+    private final TerminalColor color;
+    // only used to create the escape sequences, it is never handed out
+    private final TerminalTextStyle textStyle;
+    private final String sgr;
+    // the sequence needed to change from another style, indexed by the id of that style
+    private volatile String[] transitions = new String[0];
+
+    /**
+     * Lookup key, nothing is computed.
+     */
+    private TerminalStyle(int flags, TerminalColor color) {
+        this.id = -1;
+        this.flags = flags;
+        this.color = color;
+        this.textStyle = null;
+        this.sgr = null;
+    }
+
+    private TerminalStyle(int id, int flags, TerminalColor color) {
+        this.id = id;
+        this.flags = flags;
+        this.color = color;
+        textStyle = TerminalTextStyle.fromFlags(flags);
+        sgr = ANSI.START + textStyle.toString() + ';' + color.toString() + 'm';
+    }
+
+    /**
+     * @param style text style, if null no text style is used
+     * @param color color, if null the default colors are used
+     * @return the interned style, later changes to the text style are not reflected
+     */
+    public static TerminalStyle of(TerminalTextStyle style, TerminalColor color) {
+        int flags = style != null ? style.flags() : 0;
+        if(color == null)
+            color = TerminalColor.DEFAULT;
+        TerminalStyle key = new TerminalStyle(flags, color);
+        TerminalStyle interned = STYLES.get(key);
+        if(interned == null) {
+            synchronized(STYLES) {
+                interned = STYLES.get(key);
+                if(interned == null) {
+                    interned = new TerminalStyle(STYLES.size(), flags, color);
+                    TerminalStyle[] styles = byId;
+                    if(interned.id == styles.length)
+                        styles = Arrays.copyOf(styles, styles.length * 2);
+                    styles[interned.id] = interned;
+                    byId = styles;
+                    STYLES.put(interned, interned);
+                }
+            }
+        }
+        return interned;
+    }
+
+    /**
+     * @return the style with the given id
+     */
+    public static TerminalStyle byId(int id) {
+        return byId[id];
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TerminalColor getColor() {
+        return color;
+    }
+
+    boolean isInvert() {
+        return textStyle.isInvert();
+    }
+
+    /**
+     * @return true if the text style still match this style, it can be changed with its setters
+     */
+    boolean matches(TerminalTextStyle style) {
+        return flags == (style != null ? style.flags() : 0);
+    }
+
+    TerminalTextStyle textStyle() {
+        return textStyle;
+    }
+
+    /**
+     * @return the escape sequence that set this style: style, text color, background color
+     */
+    public String getSGR() {
+        return sgr;
+    }
+
+    /**
+     * @return the escape sequence needed to change from the previous style to this style,
+     *         empty if the styles are equal
+     */
+    public String getSGR(TerminalStyle prev) {
+        if(prev == this)
+            return "";
+        String[] cached = transitions;
+        if(prev.id < cached.length && cached[prev.id] != null)
+            return cached[prev.id];
+
+        String transition = createTransition(prev);
+        // a lost update only means the sequence is created again
+        if(prev.id >= cached.length)
+            cached = Arrays.copyOf(cached, Math.max(prev.id + 1, cached.length * 2));
+        cached[prev.id] = transition;
+        transitions = cached;
+        return transition;
+    }
+
+    private String createTransition(TerminalStyle prev) {
+        StringBuilder builder = new StringBuilder(ANSI.START);
+        if(flags != prev.flags)
+            builder.append(textStyle.getValueComparedToPrev(prev.textStyle));
+        if(!color.equals(prev.color)) {
+            if(builder.length() > ANSI.START.length())
+                builder.append(';');
+            if(prev.isInvert())
+                builder.append(color.toString());
+            else
+                builder.append(color.toString(prev.color));
+        }
+        return builder.append('m').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TerminalStyle)) return false;
+
+        TerminalStyle that = (TerminalStyle) o;
+
+        return flags == that.flags && color.equals(that.color);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * flags + color.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return sgr;
+    }
+}
@@ -82,6 +82,34 @@ public class TerminalTextStyle {
         this.crossedOut = crossedOut;
     }
 
+    /**
+     * @return the style as a bit set, one bit for each {@link CharacterType}
+     */
+    int flags() {
+        return flag(bold, CharacterType.BOLD) | flag(faint, CharacterType.FAINT) |
+                flag(italic, CharacterType.ITALIC) | flag(underline, CharacterType.UNDERLINE) |
+                flag(blink, CharacterType.BLINK) | flag(invert, CharacterType.INVERT) |
+                flag(conceal, CharacterType.CONCEAL) | flag(crossedOut, CharacterType.CROSSED_OUT);
+    }
+
+    private static int flag(boolean set, CharacterType type) {
+        return set ? 1 << type.ordinal() : 0;
+    }
+
+    static TerminalTextStyle fromFlags(int flags) {
+        TerminalTextStyle style = new TerminalTextStyle(
+                isSet(flags, CharacterType.BOLD), isSet(flags, CharacterType.FAINT),
+                isSet(flags, CharacterType.ITALIC), isSet(flags, CharacterType.UNDERLINE),
+                isSet(flags, CharacterType.BLINK), isSet(flags, CharacterType.INVERT),
+                isSet(flags, CharacterType.CROSSED_OUT));
+        style.setConceal(isSet(flags, CharacterType.CONCEAL));
+        return style;
+    }
+
+    private static boolean isSet(int flags, CharacterType type) {
+        return (flags & (1 << type.ordinal())) != 0;
+    }
+
     public boolean isBold() {
         return bold;
     }
@@ -23,18 +23,37 @@ import org.aesh.terminal.Attributes;
 
 import java.io.IOError;
 import java.io.IOException;
+import org.aesh.terminal.tty.Signal;
 import org.aesh.terminal.tty.Size;
 
+/**
+ * The attributes and size are cached when we are notified of the signals, reading them from the
+ * pty can be expensive (eg. ExecPty start a stty process). The attributes are only refreshed after
+ * SIGCONT, the size after SIGWINCH and SIGCONT. Setting attributes equal to the cached ones is a no-op.
+ * Without the signals a change made by another process would go unnoticed, so nothing is cached.
+ */
 public abstract class AbstractPosixTerminal extends AbstractTerminal {
 
     protected final Pty pty;
     protected final Attributes originalAttributes;
+    // the attributes and size are only cached if we are notified of SIGCONT and SIGWINCH
+    private final boolean cache;
+    private volatile Attributes attributes;
+    private volatile Size size;
 
     public AbstractPosixTerminal(String name, String type, Pty pty) throws IOException {
+        this(name, type, pty, false);
+    }
+
+    public AbstractPosixTerminal(String name, String type, Pty pty, boolean cache) throws IOException {
         super(name, type);
         assert pty != null;
         this.pty = pty;
+        this.cache = cache;
         this.originalAttributes = this.pty.getAttr();
+        if (cache) {
+            this.attributes = new Attributes(originalAttributes);
+        }
     }
 
     protected Pty getPty() {
@@ -42,31 +61,74 @@ public abstract class AbstractPosixTerminal extends AbstractTerminal {
     }
 
     public Attributes getAttributes() {
-        try {
-            return pty.getAttr();
-        } catch (IOException e) {
-            throw new IOError(e);
+        Attributes current = attributes;
+        if (current == null) {
+            try {
+                current = pty.getAttr();
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            if (cache) {
+                attributes = current;
+            }
         }
+        return new Attributes(current);
     }
 
     public void setAttributes(Attributes attr) {
+        Attributes current = attributes;
+        if (current != null && equal(current, attr)) {
+            return;
+        }
         try {
             pty.setAttr(attr);
+            if (cache) {
+                attributes = new Attributes(attr);
+            }
         } catch (IOException e) {
+            attributes = null;
             throw new IOError(e);
         }
     }
 
     public Size getSize() {
-        try {
-            return pty.getSize();
-        } catch (IOException e) {
-            throw new IOError(e);
+        Size current = size;
+        if (current == null) {
+            try {
+                current = pty.getSize();
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            if (cache) {
+                size = current;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public void raise(Signal signal) {
+        // the terminal might have been changed while we were stopped
+        if (signal == Signal.CONT) {
+            attributes = null;
+            size = null;
+        }
+        else if (signal == Signal.WINCH) {
+            size = null;
         }
+        super.raise(signal);
     }
 
     public void close() throws IOException {
         pty.setAttr(originalAttributes);
         pty.close();
     }
+
+    private static boolean equal(Attributes a, Attributes b) {
+        return a.getInputFlags().equals(b.getInputFlags()) &&
+                a.getOutputFlags().equals(b.getOutputFlags()) &&
+                a.getControlFlags().equals(b.getControlFlags()) &&
+                a.getLocalFlags().equals(b.getLocalFlags()) &&
+                a.getControlChars().equals(b.getControlChars());
+    }
 }
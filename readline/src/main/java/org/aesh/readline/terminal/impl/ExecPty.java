@@ -36,7 +36,11 @@ import java.io.OutputStream;
 import java.lang.ProcessBuilder.Redirect;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -52,6 +56,32 @@ public class ExecPty implements Pty {
     private final boolean validTTYFile;
     private static final String NOT_A_TTY = "not a tty";
 
+    // the stty output patterns, compiled once
+    private static final Map<Enum<?>, Pattern> FLAG_PATTERNS = new HashMap<>();
+    private static final Map<Attributes.ControlChar, Pattern> CONTROL_CHAR_PATTERNS =
+            new EnumMap<>(Attributes.ControlChar.class);
+
+    static {
+        addFlagPatterns(Attributes.InputFlag.values());
+        addFlagPatterns(Attributes.OutputFlag.values());
+        addFlagPatterns(Attributes.ControlFlag.values());
+        addFlagPatterns(Attributes.LocalFlag.values());
+        for (Attributes.ControlChar cchar : Attributes.ControlChar.values()) {
+            String name = cchar.name().toLowerCase().substring(1);
+            if ("reprint".endsWith(name)) {
+                name = "(?:reprint|rprnt)";
+            }
+            CONTROL_CHAR_PATTERNS.put(cchar, Pattern.compile("[\\s;]" + name + "\\s*=\\s*(.+?)[\\s;]"));
+        }
+    }
+
+    /**
+     * The attributes read by the last getAttr, used once as the base of the next setAttr so
+     * it only run stty once. Attributes we have written are not used as a base, another terminal
+     * on the same tty or a child process might have changed the modes since.
+     */
+    private final AtomicReference<Attributes> readAttributes = new AtomicReference<>();
+
     public static Pty current() throws IOException {
         try {
             LOGGER.log(Level.FINE,"getting pty: "+OSUtils.TTY_COMMAND);
@@ -127,6 +157,12 @@ public class ExecPty implements Pty {
 
     @Override
     public Attributes getAttr() throws IOException {
+        Attributes attributes = doGetAttr();
+        readAttributes.set(new Attributes(attributes));
+        return attributes;
+    }
+
+    private Attributes doGetAttr() throws IOException {
         try {
             String cfg = doGetConfig();
             if (OSUtils.IS_HPUX || OSUtils.IS_SUNOS) {
@@ -148,9 +184,46 @@ public class ExecPty implements Pty {
         }
     }
 
+    /**
+     * Only the changes compared to the current attributes are sent to stty. The current
+     * attributes are read from the tty, unless they were just read by getAttr.
+     */
     @Override
     public void setAttr(Attributes attr) throws IOException {
-        Attributes current = getAttr();
+        Attributes current = readAttributes.getAndSet(null);
+        if (current == null) {
+            current = doGetAttr();
+        }
+        List<String> commands = sttyArguments(attr, current);
+        if (!commands.isEmpty()) {
+            doSetAttr(commands);
+        }
+    }
+
+    private void doSetAttr(List<String> commands) throws IOException {
+        if(OSUtils.IS_HPUX || OSUtils.IS_SUNOS) {
+            commands.add(0, OSUtils.STTY_COMMAND);
+            exec(commands.toArray(new String[commands.size()]));
+        }
+        else {
+            commands.add(0, OSUtils.STTY_COMMAND);
+            commands.add(1, OSUtils.STTY_F_OPTION);
+            commands.add(2, getName());
+            try {
+                exec(commands.toArray(new String[commands.size()]));
+            } catch (IOException ex) {
+                // Try a fallback without -f
+                commands.remove(2);
+                commands.remove(1);
+                exec(commands.toArray(new String[commands.size()]));
+            }
+        }
+    }
+
+    /**
+     * @return the stty arguments needed to change the current attributes to attr
+     */
+    static List<String> sttyArguments(Attributes attr, Attributes current) {
         List<String> commands = new ArrayList<>();
         for (Attributes.InputFlag flag : Attributes.InputFlag.values()) {
             if (attr.getInputFlag(flag) != current.getInputFlag(flag)) {
@@ -197,25 +270,7 @@ public class ExecPty implements Pty {
                 }
             }
         }
-        if (!commands.isEmpty()) {
-            if(OSUtils.IS_HPUX || OSUtils.IS_SUNOS) {
-                commands.add(0, OSUtils.STTY_COMMAND);
-                exec(commands.toArray(new String[commands.size()]));
-            }
-            else {
-                commands.add(0, OSUtils.STTY_COMMAND);
-                commands.add(1, OSUtils.STTY_F_OPTION);
-                commands.add(2, getName());
-                try {
-                    exec(commands.toArray(new String[commands.size()]));
-                } catch (IOException ex) {
-                    // Try a fallback without -f
-                    commands.remove(2);
-                    commands.remove(1);
-                    exec(commands.toArray(new String[commands.size()]));
-                }
-            }
-        }
+        return commands;
     }
 
     @Override
@@ -348,11 +403,7 @@ public class ExecPty implements Pty {
             }
         }
         for (Attributes.ControlChar cchar : Attributes.ControlChar.values()) {
-            String name = cchar.name().toLowerCase().substring(1);
-            if ("reprint".endsWith(name)) {
-                name = "(?:reprint|rprnt)";
-            }
-            Matcher matcher = Pattern.compile("[\\s;]" + name + "\\s*=\\s*(.+?)[\\s;]").matcher(cfg);
+            Matcher matcher = CONTROL_CHAR_PATTERNS.get(cchar).matcher(cfg);
             if (matcher.find()) {
                 attributes.setControlChar(cchar, parseControlChar(matcher.group(1).toUpperCase()));
             }
@@ -361,10 +412,16 @@ public class ExecPty implements Pty {
     }
 
     private static Boolean doGetFlag(String cfg, Enum<?> flag) {
-        Matcher matcher = Pattern.compile("(?:^|[\\s;])(\\-?" + flag.name().toLowerCase() + ")(?:[\\s;]|$)").matcher(cfg);
+        Matcher matcher = FLAG_PATTERNS.get(flag).matcher(cfg);
         return matcher.find() ? !matcher.group(1).startsWith("-") : null;
     }
 
+    private static void addFlagPatterns(Enum<?>[] flags) {
+        for (Enum<?> flag : flags) {
+            FLAG_PATTERNS.put(flag, Pattern.compile("(?:^|[\\s;])(\\-?" + flag.name().toLowerCase() + ")(?:[\\s;]|$)"));
+        }
+    }
+
     static int parseControlChar(String str) {
         // octal
         if (str.charAt(0) == '0') {
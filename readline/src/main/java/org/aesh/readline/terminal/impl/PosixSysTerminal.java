@@ -37,7 +37,7 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
     protected final ShutdownHooks.Task closer;
 
     public PosixSysTerminal(String name, String type, Pty pty, boolean nativeSignals) throws IOException {
-        super(name, type, pty);
+        super(name, type, pty, nativeSignals);
         this.input = pty.getSlaveInput();
         this.output = pty.getSlaveOutput();
         if (nativeSignals) {
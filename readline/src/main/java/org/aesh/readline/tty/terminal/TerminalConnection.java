@@ -34,6 +34,7 @@ import org.aesh.readline.util.LoggerUtil;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -60,6 +61,8 @@ public class TerminalConnection implements Connection {
     private Consumer<Size> sizeHandler;
     private Decoder decoder;
     private Consumer<int[]> stdOut;
+    // null if the terminal consume code points itself
+    private Encoder encoder;
     private Attributes attributes;
     private EventDecoder eventDecoder;
     private volatile boolean reading = false;
@@ -142,7 +145,8 @@ public class TerminalConnection implements Connection {
         decoder = new Decoder(512, inputEncoding(), eventDecoder);
 
         if(terminal.getCodePointConsumer() == null) {
-            stdOut = new Encoder(outputEncoding(), this::write);
+            encoder = new Encoder(outputEncoding(), (bytes, offset, length) -> write(bytes, offset, length));
+            stdOut = encoder;
         } else {
             stdOut = terminal.getCodePointConsumer();
         }
@@ -265,9 +269,9 @@ public class TerminalConnection implements Connection {
         awake();
     }
 
-    private void write(byte[] data) {
+    private void write(byte[] data, int offset, int length) {
         try {
-            terminal.output().write(data);
+            terminal.output().write(data, offset, length);
         }
         catch(IOException e) {
             LOGGER.log(Level.WARNING, "Failed to write out.",e);
@@ -327,6 +331,25 @@ public class TerminalConnection implements Connection {
         return stdOut;
     }
 
+    /**
+     * The text is encoded straight to the terminal output, \n is translated by the tty itself.
+     */
+    @Override
+    public Connection write(CharSequence s) {
+        if(encoder == null)
+            return Connection.super.write(s);
+        encoder.write(s, false);
+        return this;
+    }
+
+    @Override
+    public Connection writeBytes(ByteBuffer bytes) {
+        if(encoder == null)
+            return Connection.super.writeBytes(bytes);
+        encoder.writeBytes(bytes, false);
+        return this;
+    }
+
     @Override
     public void setCloseHandler(Consumer<Void> closeHandler) {
         this.closeHandler = closeHandler;
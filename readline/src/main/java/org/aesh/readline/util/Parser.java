@@ -77,16 +77,15 @@ public class Parser {
         if (termWidth < 1) {
             termWidth = 80; // setting it to default
         }
+        int[] widths = new int[displayList.size()];
         int maxLength = 0;
-        for (String completion : displayList) {
-            if (completion.length() > termWidth) {
-                maxLength = termWidth;
-                break;
-            }
-            if (completion.length() > maxLength) {
-                maxLength = completion.length();
-            }
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = displayWidth(displayList.get(i));
+            if (widths[i] > maxLength)
+                maxLength = widths[i];
         }
+        if (maxLength > termWidth)
+            maxLength = termWidth;
 
         if (maxLength + 2 <= termWidth) {
             maxLength = maxLength + 2; // adding two spaces for better readability
@@ -107,12 +106,13 @@ public class Parser {
         }
 
         // create the completion listing
-        StringBuilder completionOutput = new StringBuilder();
+        StringBuilder completionOutput = new StringBuilder(numRows * (termWidth + 2));
         for (int i = 0; i < numRows; i++) {
             for (int c = 0; c < numColumns; c++) {
                 int fetch = i + (c * numRows);
                 if (fetch < displayList.size()) {
-                    completionOutput.append(padRight(maxLength, displayList.get(i + (c * numRows))));
+                    completionOutput.append(displayList.get(fetch));
+                    appendSpaces(completionOutput, maxLength - widths[fetch]);
                 } else {
                     break;
                 }
@@ -132,16 +132,32 @@ public class Parser {
      * @return formatted string to be outputted
      */
     public static String formatDisplayListTerminalString(List<TerminalString> displayList, int termHeight, int termWidth) {
+        StringBuilder completionOutput = new StringBuilder();
+        formatDisplayListTerminalString(displayList, termHeight, termWidth, completionOutput);
+        return completionOutput.toString();
+    }
+
+    /**
+     * Format completions so that they look similar to GNU Readline
+     *
+     * @param displayList to format
+     * @param termHeight max height
+     * @param termWidth max width
+     * @param completionOutput the formatted completions are appended here
+     */
+    public static void formatDisplayListTerminalString(List<TerminalString> displayList, int termHeight, int termWidth,
+                                                       StringBuilder completionOutput) {
         if (displayList == null || displayList.size() < 1)
-            return "";
+            return;
         // make sure that termWidth is > 0
         if (termWidth < 1)
             termWidth = 80; // setting it to default
 
+        int[] widths = displayWidths(displayList);
         int maxLength = 0;
-        for (TerminalString completion : displayList)
-            if (completion.getCharacters().length() > maxLength)
-                maxLength = completion.getCharacters().length();
+        for (int width : widths)
+            if (width > maxLength)
+                maxLength = width;
 
         maxLength = maxLength + 2; // adding two spaces for better readability
         int numColumns = termWidth / maxLength;
@@ -155,20 +171,16 @@ public class Parser {
         if (numRows * numColumns < displayList.size())
             numRows++;
 
-        StringBuilder completionOutput = new StringBuilder();
         if (numRows > 1) {
             // create the completion listing
             for (int i = 0; i < numRows; i++) {
                 for (int c = 0; c < numColumns; c++) {
                     int fetch = i + (c * numRows);
                     if (fetch < displayList.size()) {
-                        if (c == numColumns - 1) {  // No need to pad the right most column
-                            completionOutput.append(displayList.get(i + (c * numRows)).toString());
-                        } else {
-                            completionOutput.append(padRight(maxLength
-                                    + displayList.get(i + (c * numRows)).getANSILength(),
-                                    displayList.get(i + (c * numRows)).toString()));
-                        }
+                        completionOutput.append(displayList.get(fetch).toString());
+                        // No need to pad the right most column
+                        if (c < numColumns - 1)
+                            appendSpaces(completionOutput, maxLength - widths[fetch]);
                     } else {
                         break;
                     }
@@ -182,8 +194,6 @@ public class Parser {
             }
             completionOutput.append(Config.getLineSeparator());
         }
-
-        return completionOutput.toString();
     }
 
     /**
@@ -194,99 +204,131 @@ public class Parser {
      * @return formatted string to be outputted
      */
     public static String formatDisplayCompactListTerminalString(List<TerminalString> displayList, int termWidth) {
+        StringBuilder stringOutput = new StringBuilder();
+        formatDisplayCompactListTerminalString(displayList, termWidth, stringOutput);
+        return stringOutput.toString();
+    }
+
+    /**
+     * Format output to columns with flexible sizes and no redundant space between them.
+     *
+     * The display widths are computed once. A layout with n rows need at least the sum of
+     * all the column widths divided by n, so the search for the fewest rows start there and
+     * a layout is rejected as soon as its columns are wider than the terminal.
+     *
+     * @param displayList to format
+     * @param termWidth max width
+     * @param stringOutput the formatted output is appended here
+     */
+    public static void formatDisplayCompactListTerminalString(List<TerminalString> displayList, int termWidth,
+                                                              StringBuilder stringOutput) {
         if (displayList == null || displayList.size() < 1)
-            return "";
+            return;
         // make sure that termWidth is > 0
         if (termWidth < 1)
             termWidth = 80; // setting it to default
 
-        int numRows = 1;
+        int size = displayList.size();
+        int[] widths = displayWidths(displayList);
+        long total = 0;
+        for (int width : widths)
+            if (width + 2 <= termWidth)
+                total += width + 2;
 
-        // increase numRows and check in loop if it's possible to format strings to columns
-        while (!canDisplayColumns(displayList, numRows, termWidth) && numRows < displayList.size()) {
-            numRows++;
-        }
+        int numRows = (int) Math.max(1, Math.min(size, (total + termWidth - 1) / termWidth));
+        int[] columnsSizes = new int[(size + numRows - 1) / numRows];
 
-        int numColumns = displayList.size() / numRows;
-        if (displayList.size() % numRows > 0) {
-            numColumns++;
+        // increase numRows until the columns fit in the terminal
+        while (!calculateColumnSizes(widths, numRows, termWidth, columnsSizes) && numRows < size) {
+            numRows++;
         }
 
-        int[] columnsSizes = calculateColumnSizes(displayList, numColumns, numRows, termWidth);
-
-        StringBuilder stringOutput = new StringBuilder();
-
+        int numColumns = (size + numRows - 1) / numRows;
         for (int i = 0; i < numRows; i++) {
             for (int c = 0; c < numColumns; c++) {
                 int fetch = i + (c * numRows);
-                int nextFetch = i + ((c + 1) * numRows);
-
-                if (fetch < displayList.size()) {
-                    // don't need to format last column of row = nextFetch doesn't exit
-                    if (nextFetch < displayList.size()) {
-                        stringOutput.append(padRight(columnsSizes[c] + displayList.get(i + (c * numRows)).getANSILength(),
-                                displayList.get(i + (c * numRows)).toString()));
-                    }
-                    else {
-                        stringOutput.append(displayList.get(i + (c * numRows)).toString());
-                    }
-                }
-                else {
+                if (fetch >= size)
                     break;
-                }
+                stringOutput.append(displayList.get(fetch).toString());
+                // don't need to format last column of row = nextFetch doesn't exit
+                if (fetch + numRows < size)
+                    appendSpaces(stringOutput, columnsSizes[c] - widths[fetch]);
             }
             stringOutput.append(Config.getLineSeparator());
         }
-
-        return stringOutput.toString();
     }
 
     /**
-     * Decides if it's possible to format provided Strings into calculated number of columns while the output will not exceed
-     * terminal width
+     * Calculate the column sizes for the given number of rows, items wider than the terminal
+     * are not counted.
      *
-     * @param displayList
-     * @param numRows
-     * @param terminalWidth
-     * @return true if it's possible to format strings to columns and false otherwise.
+     * @return true if the columns fit in the terminal width
      */
-    private static boolean canDisplayColumns(List<TerminalString> displayList, int numRows, int terminalWidth) {
-
-        int numColumns = displayList.size() / numRows;
-        if (displayList.size() % numRows > 0) {
-            numColumns++;
-        }
-
-        int[] columnSizes = calculateColumnSizes(displayList, numColumns, numRows, terminalWidth);
-
+    private static boolean calculateColumnSizes(int[] widths, int numRows, int termWidth, int[] columnSizes) {
+        int numColumns = (widths.length + numRows - 1) / numRows;
         int totalSize = 0;
-        for (int columnSize : columnSizes) {
+        for (int c = 0; c < numColumns; c++) {
+            int columnSize = 0;
+            int end = Math.min(widths.length, (c + 1) * numRows);
+            for (int i = c * numRows; i < end; i++) {
+                int stringSize = widths[i] + 2;
+                if (columnSize < stringSize && stringSize <= termWidth)
+                    columnSize = stringSize;
+            }
+            columnSizes[c] = columnSize;
             totalSize += columnSize;
+            if (totalSize > termWidth)
+                return false;
         }
-        return totalSize <= terminalWidth;
+        return true;
     }
 
-    private static int[] calculateColumnSizes(List<TerminalString> displayList, int numColumns, int numRows, int termWidth) {
-        int[] columnSizes = new int[numColumns];
-
-        for (int i = 0; i < displayList.size(); i++) {
-            int columnIndex = (i / numRows) % numColumns;
-            int stringSize = displayList.get(i).getCharacters().length() + 2;
-
-            if (columnSizes[columnIndex] < stringSize && stringSize <= termWidth) {
-                columnSizes[columnIndex] = stringSize;
+    /**
+     * @return number of terminal columns used to display the text, wide characters use two columns
+     */
+    public static int displayWidth(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); ) {
+            char c = text.charAt(i);
+            if (c >= 32 && c < 127) {
+                width++;
+                i++;
+            }
+            else {
+                int codePoint = text.codePointAt(i);
+                width += Math.max(0, WcWidth.width(codePoint));
+                i += Character.charCount(codePoint);
             }
         }
+        return width;
+    }
 
-        return columnSizes;
+    private static int[] displayWidths(List<TerminalString> displayList) {
+        int[] widths = new int[displayList.size()];
+        for (int i = 0; i < widths.length; i++)
+            widths[i] = displayWidth(displayList.get(i).getCharacters());
+        return widths;
+    }
+
+    private static void appendSpaces(StringBuilder builder, int count) {
+        for (int i = 0; i < count; i++)
+            builder.append(' ');
     }
 
     public static String padRight(int n, String s) {
-        return String.format("%1$-" + n + "s", s);
+        if (s.length() >= n)
+            return s;
+        StringBuilder builder = new StringBuilder(n).append(s);
+        appendSpaces(builder, n - s.length());
+        return builder.toString();
     }
 
     public static String padLeft(int n, String s) {
-        return String.format("%1$" + n + "s", s);
+        if (s.length() >= n)
+            return s;
+        StringBuilder builder = new StringBuilder(n);
+        appendSpaces(builder, n - s.length());
+        return builder.append(s).toString();
     }
 
     public static List<String> splitBySizeKeepWords(String words, int size) {
@@ -336,15 +378,17 @@ public class Parser {
      * @return common start string
      */
     public static String findStartsWithOperation(List<? extends CompleteOperation> coList) {
-        List<String> tmpList = new ArrayList<>();
+        String startsWith = null;
         for (CompleteOperation co : coList) {
             String s = findStartsWith(co.getFormattedCompletionCandidates());
-            if (s.length() > 0)
-                tmpList.add(s);
-            else
+            if (s.length() == 0)
                 return "";
+            if (startsWith == null)
+                startsWith = s;
+            else
+                startsWith = startsWith.substring(0, commonPrefixLength(startsWith, s, startsWith.length()));
         }
-        return findStartsWith(tmpList);
+        return startsWith == null ? "" : startsWith;
     }
 
     /**
@@ -354,21 +398,13 @@ public class Parser {
      * @return biggest common startsWith string
      */
     public static String findStartsWith(List<String> completionList) {
-        StringBuilder builder = new StringBuilder();
-        for (String completion : completionList)
-            while (builder.length() < completion.length() &&
-                    startsWith(completion.substring(0, builder.length() + 1), completionList))
-                builder.append(completion.charAt(builder.length()));
-
-        return builder.toString();
-    }
-
-    private static boolean startsWith(String criteria, List<String> completionList) {
-        for (String completion : completionList)
-            if (!completion.startsWith(criteria))
-                return false;
-
-        return true;
+        if (completionList.isEmpty())
+            return "";
+        String first = completionList.get(0);
+        int length = first.length();
+        for (int i = 1; i < completionList.size() && length > 0; i++)
+            length = commonPrefixLength(first, completionList.get(i), length);
+        return first.substring(0, length);
     }
 
     /**
@@ -378,21 +414,32 @@ public class Parser {
      * @return biggest common startsWith string
      */
     public static String findStartsWithTerminalString(List<TerminalString> completionList) {
-        StringBuilder builder = new StringBuilder();
-        for (TerminalString completion : completionList)
-            while (builder.length() < completion.getCharacters().length() &&
-                    startsWithTerminalString(completion.getCharacters().substring(0, builder.length() + 1), completionList))
-                builder.append(completion.getCharacters().charAt(builder.length()));
-
-        return builder.toString();
+        if (completionList.isEmpty())
+            return "";
+        String first = completionList.get(0).getCharacters();
+        int length = first.length();
+        for (int i = 1; i < completionList.size() && length > 0; i++)
+            length = commonPrefixLength(first, completionList.get(i).getCharacters(), length);
+        return first.substring(0, length);
     }
 
-    private static boolean startsWithTerminalString(String criteria, List<TerminalString> completionList) {
-        for (TerminalString completion : completionList)
-            if (!completion.getCharacters().startsWith(criteria))
-                return false;
-
-        return true;
+    /**
+     * Compare the strings char by char, the common prefix do not end in the middle of a surrogate pair.
+     *
+     * @param max only compare up to max chars
+     * @return length of the common prefix
+     */
+    private static int commonPrefixLength(String first, String second, int max) {
+        int length = Math.min(max, second.length());
+        for (int i = 0; i < length; i++) {
+            if (first.charAt(i) != second.charAt(i)) {
+                length = i;
+                break;
+            }
+        }
+        if (length > 0 && length < first.length() && Character.isHighSurrogate(first.charAt(length - 1)))
+            length--;
+        return length;
     }
 
     public static String findWordClosestToCursor(String text, int cursor) {
@@ -790,4 +837,13 @@ public class Parser {
         return arrayIndexOf(source, target) > -1;
 
     }
+
+    public static boolean arrayStartsWith(int[] source, int[] prefix) {
+        if(source.length < prefix.length)
+            return false;
+        for(int i = 0; i < prefix.length; i++)
+            if(source[i] != prefix[i])
+                return false;
+        return true;
+    }
 }
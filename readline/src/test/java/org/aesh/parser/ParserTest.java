@@ -19,6 +19,10 @@
  */
 package org.aesh.parser;
 
+import org.aesh.readline.completion.CompleteOperation;
+import org.aesh.readline.completion.CompleteOperationImpl;
+import org.aesh.readline.terminal.formatting.Color;
+import org.aesh.readline.terminal.formatting.TerminalColor;
 import org.aesh.readline.terminal.formatting.TerminalString;
 import org.aesh.terminal.utils.ANSI;
 import org.aesh.terminal.utils.Config;
@@ -54,6 +58,43 @@ public class ParserTest {
         completionList.add("foo");
         completionList.add("bar");
         assertEquals("", Parser.findStartsWith(completionList));
+
+        completionList.clear();
+        assertEquals("", Parser.findStartsWith(completionList));
+        completionList.add("foo");
+        assertEquals("foo", Parser.findStartsWith(completionList));
+
+        //do not split a surrogate pair
+        completionList.clear();
+        completionList.add("a\uD83D\uDE00");
+        completionList.add("a\uD83D\uDE01");
+        assertEquals("a", Parser.findStartsWith(completionList));
+    }
+
+    @Test
+    public void testFindStartsWithTerminalString() {
+        List<TerminalString> completionList = new ArrayList<>();
+        completionList.add(new TerminalString("foobar", new TerminalColor(Color.RED, Color.DEFAULT)));
+        completionList.add(new TerminalString("foobaz", true));
+        completionList.add(new TerminalString("foob"));
+        assertEquals("foob", Parser.findStartsWithTerminalString(completionList));
+        completionList.add(new TerminalString("bar"));
+        assertEquals("", Parser.findStartsWithTerminalString(completionList));
+        assertEquals("", Parser.findStartsWithTerminalString(Collections.emptyList()));
+    }
+
+    @Test
+    public void testFindStartsWithOperation() {
+        CompleteOperation first = new CompleteOperationImpl("foo", 3);
+        first.addCompletionCandidate("foobar");
+        first.addCompletionCandidate("foobaz");
+        CompleteOperation second = new CompleteOperationImpl("foo", 3);
+        second.addCompletionCandidate("foobo");
+        assertEquals("b", Parser.findStartsWithOperation(Arrays.asList(first, second)));
+
+        CompleteOperation third = new CompleteOperationImpl("foo", 3);
+        third.addCompletionCandidate("foo");
+        assertEquals("", Parser.findStartsWithOperation(Arrays.asList(first, second, third)));
     }
 
     @Test
@@ -148,6 +189,33 @@ public class ParserTest {
     public void testPadLeft() {
         assertEquals(" foo", Parser.padLeft(4, "foo"));
         assertEquals("   foo", Parser.padLeft(6, "foo"));
+        assertEquals("foo", Parser.padLeft(2, "foo"));
+        assertEquals("foo   ", Parser.padRight(6, "foo"));
+        assertEquals("foo", Parser.padRight(0, "foo"));
+    }
+
+    @Test
+    public void testDisplayWidth() {
+        assertEquals(3, Parser.displayWidth("foo"));
+        assertEquals(4, Parser.displayWidth("\u4e2d\u6587"));
+        assertEquals(0, Parser.displayWidth(""));
+    }
+
+    @Test
+    public void testFormatDisplayCompactListWideAndAnsi() {
+        TerminalString wide = new TerminalString("\u4e2d\u6587");
+        TerminalString colored = new TerminalString("str1", new TerminalColor(Color.RED, Color.DEFAULT));
+        TerminalString plain = new TerminalString("str2");
+        TerminalString other = new TerminalString("s3");
+
+        //wide characters use two columns each
+        assertEquals(wide.toString() + "  " + plain.toString() + Config.getLineSeparator() +
+                        colored.toString() + "  " + other.toString() + Config.getLineSeparator(),
+                Parser.formatDisplayCompactListTerminalString(Arrays.asList(wide, colored, plain, other), 13));
+
+        StringBuilder out = new StringBuilder("> ");
+        Parser.formatDisplayCompactListTerminalString(Arrays.asList(colored, plain), 20, out);
+        assertEquals("> " + colored.toString() + "  " + plain.toString() + Config.getLineSeparator(), out.toString());
     }
 
     @Test
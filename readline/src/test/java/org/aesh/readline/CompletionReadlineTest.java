@@ -19,14 +19,31 @@
  */
 package org.aesh.readline;
 
+import org.aesh.readline.completion.CompleteOperation;
 import org.aesh.readline.completion.Completion;
+import org.aesh.readline.completion.CompletionMatcher;
+import org.aesh.readline.completion.SimpleCompletionHandler;
+import org.aesh.readline.editing.EditModeBuilder;
+import org.aesh.readline.history.InMemoryHistory;
 import org.aesh.readline.terminal.Key;
+import org.aesh.readline.terminal.formatting.Color;
+import org.aesh.readline.terminal.formatting.TerminalColor;
+import org.aesh.readline.terminal.formatting.TerminalString;
 import org.aesh.readline.tty.terminal.TestConnection;
+import org.aesh.terminal.tty.Size;
 import org.aesh.terminal.utils.Config;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author <a href=mailto:stale.pedersen@jboss.org">Ståle W. Pedersen</a>
@@ -193,4 +210,288 @@ public class CompletionReadlineTest {
         term.read(Config.getLineSeparator());
     }
 
+    @Test
+    public void testAsyncCompletionDeadline() throws InterruptedException {
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            if(co.getBuffer().equals("foo"))
+                co.addCompletionCandidate("foobar");
+        });
+        completions.add(co -> {
+            try {
+                Thread.sleep(10000);
+                co.addCompletionCandidate("fooslow");
+            }
+            catch(InterruptedException ignored) {
+            }
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setAsyncCompletion(true);
+        completionHandler.setCompletionTimeout(200, TimeUnit.MILLISECONDS);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read("foo".getBytes());
+        term.read(Key.CTRL_I);
+        //the slow completion is dropped when the deadline is reached
+        for(int i = 0; i < 100 && !readline.getBuffer().equals("foobar "); i++)
+            Thread.sleep(50);
+        assertEquals("foobar ", readline.getBuffer());
+        term.read(Config.getLineSeparator());
+        term.assertLine("foobar ");
+    }
+
+    @Test
+    public void testAsyncCompletionCancelledByInput() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+                co.addCompletionCandidate("foobar");
+            }
+            catch(InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setAsyncCompletion(true);
+        completionHandler.setCompletionTimeout(20, TimeUnit.SECONDS);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read("foo".getBytes());
+        term.read(Key.CTRL_I);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        term.read("x".getBytes());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        term.read(Config.getLineSeparator());
+        term.assertLine("foox");
+    }
+
+    @Test
+    public void testCompletionCache() {
+        AtomicInteger calls = new AtomicInteger();
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            calls.incrementAndGet();
+            for(String name : new String[] {"foo", "foobar", "fuu"})
+                if(name.startsWith(co.getBuffer()))
+                    co.addCompletionCandidate(name);
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.enableCompletionCache(10, 1, TimeUnit.MINUTES);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read("f".getBytes());
+        term.read(Key.CTRL_I);
+        term.read("o".getBytes());
+        term.read(Key.CTRL_I);
+        assertEquals("foo", readline.getBuffer());
+        term.read("b".getBytes());
+        term.read(Key.CTRL_I);
+        assertEquals("foobar ", readline.getBuffer());
+        assertEquals(1, calls.get());
+
+        completionHandler.invalidateCompletionCache();
+        term.read(Config.getLineSeparator());
+        term.assertLine("foobar ");
+        term.readline(completions);
+        term.read("fu".getBytes());
+        term.read(Key.CTRL_I);
+        assertEquals("fuu ", readline.getBuffer());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testPagedCompletionDisplay() {
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            for(int i = 0; i < 30; i++)
+                co.addCompletionCandidate(String.format("cand%02d", i));
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setPagedCompletionDisplay(true);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, new Size(40, 6), null);
+        term.readline(completions);
+
+        //5 columns and 6 rows, the first page have 5 rows
+        term.read("cand".getBytes());
+        term.read(Key.CTRL_I);
+        String output = term.getOutputBuffer();
+        assertTrue(output.endsWith("--More--"));
+        assertTrue(output.contains("cand04  cand10  cand16  cand22  cand28" + Config.getLineSeparator()));
+        assertFalse(output.contains("cand05"));
+
+        term.clearOutputBuffer();
+        term.read(Key.ENTER);
+        assertTrue(term.getOutputBuffer().contains("cand05  cand11  cand17  cand23  cand29"));
+        assertFalse(term.getOutputBuffer().contains("--More--"));
+
+        //stop the display with q, the key is not added to the buffer
+        term.read(Key.CTRL_I);
+        term.clearOutputBuffer();
+        term.read(Key.q);
+        assertEquals("cand", readline.getBuffer());
+        term.read("foo".getBytes());
+        term.read(Config.getLineSeparator());
+        term.assertLine("candfoo");
+    }
+
+    @Test
+    public void testCompletionDisplayLimit() {
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            for(int i = 19; i >= 0; i--)
+                co.addCompletionCandidate(String.format("%c%02d", (char) ('a' + i % 4), i));
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setCompletionDisplayLimit(5);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read(Key.CTRL_I);
+        term.assertOutputBuffer(": "+Config.getLineSeparator()+"Displaying 5 of 20 possibilities"+
+                Config.getLineSeparator()+"a00  a04  a08  a12  a16  "+Config.getLineSeparator()+":");
+    }
+
+    @Test
+    public void testCompletionSample() {
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            if(co.getBuffer().equals("foo")) {
+                co.addCompletionCandidate("foobar");
+                co.setTotalCompletionCandidates(2);
+            }
+            else {
+                co.addCompletionCandidate("bar1");
+                co.addCompletionCandidate("bar2");
+                co.setTotalCompletionCandidates(1000);
+            }
+        });
+
+        TestConnection term = new TestConnection(completions);
+        term.read("foo".getBytes());
+        term.read(Key.CTRL_I);
+        //only a sample, the candidate is not completed
+        term.assertBuffer("foo");
+
+        term.read(Key.CTRL_U);
+        term.clearOutputBuffer();
+        term.read("bar".getBytes());
+        term.read(Key.CTRL_I);
+        term.assertBuffer("bar");
+        assertTrue(term.getOutputBuffer().endsWith("Display all 1000 possibilities? (y or n)"));
+        term.read(Key.y);
+        assertTrue(term.getOutputBuffer().contains("Displaying 2 of 1000 possibilities"));
+    }
+
+    @Test
+    public void testCompletionMatcher() {
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            co.addCompletionCandidate("git-commit");
+            co.addCompletionCandidate("git-create-branch");
+            co.addCompletionCandidate("magic");
+            co.addCompletionCandidate("status");
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setCompletionMatcher(CompletionMatcher.FUZZY);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read("gcb");
+        term.read(Key.CTRL_I);
+        term.assertBuffer("git-create-branch ");
+
+        term.read(Key.CTRL_U);
+        term.read("gc");
+        term.clearOutputBuffer();
+        term.read(Key.CTRL_I);
+        //no common start, the best matches are displayed first
+        term.assertBuffer("gc");
+        term.assertOutputBuffer("git-commit  git-create-branch  magic  "+
+                Config.getLineSeparator()+": gc");
+
+        term.read(Key.CTRL_U);
+        term.read("st");
+        term.read(Key.CTRL_I);
+        term.assertBuffer("status ");
+    }
+
+    @Test
+    public void testCompletionMatcherWithCache() {
+        AtomicInteger calls = new AtomicInteger();
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            calls.incrementAndGet();
+            co.addCompletionCandidate("git-commit");
+            co.addCompletionCandidate("git-create-branch");
+            co.addCompletionCandidate("magic");
+            co.addCompletionCandidate("status");
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.enableCompletionCache(10, 1, TimeUnit.MINUTES);
+        completionHandler.setCompletionMatcher(CompletionMatcher.FUZZY);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read("g");
+        term.read(Key.CTRL_I);
+        term.assertBuffer("g");
+        //the cached candidates are narrowed with the matcher, not by their start
+        term.read("cb");
+        term.read(Key.CTRL_I);
+        term.assertBuffer("git-create-branch ");
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testCompletionMatcherFormattedCandidate() {
+        AtomicReference<CompleteOperation> operation = new AtomicReference<>();
+        List<Completion> completions = new ArrayList<>();
+        completions.add(co -> {
+            co.addCompletionCandidate(new TerminalString("my file", new TerminalColor(Color.BLUE, Color.DEFAULT)));
+            co.addCompletionCandidate("other");
+            operation.set(co);
+        });
+
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setCompletionMatcher(CompletionMatcher.FUZZY);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection term = new TestConnection(readline, null, null, null, null);
+        term.readline(completions);
+
+        term.read("mfl");
+        term.read(Key.CTRL_I);
+        //no escape codes, and the space is escaped
+        term.assertBuffer("my\\ file ");
+        //the candidates of the operation are not modified by the matcher
+        assertEquals(2, operation.get().getCompletionCandidates().size());
+    }
 }
@@ -19,7 +19,9 @@
  */
 package org.aesh.readline;
 
+import org.aesh.readline.completion.CompletionHandler;
 import org.aesh.readline.editing.EditMode;
+import org.aesh.readline.history.History;
 
 /**
  * @author <a href=mailto:stale.pedersen@jboss.org">Ståle W. Pedersen</a>
@@ -34,6 +36,10 @@ public class TestReadline extends Readline {
         super(editMode);
     }
 
+    public TestReadline(EditMode editMode, History history, CompletionHandler completionHandler) {
+        super(editMode, history, completionHandler);
+    }
+
     public String getBuffer() {
         return getInputProcessor().buffer().buffer().asString();
     }
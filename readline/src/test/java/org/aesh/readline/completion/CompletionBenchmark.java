@@ -0,0 +1,156 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.TestReadline;
+import org.aesh.readline.editing.EditModeBuilder;
+import org.aesh.readline.history.InMemoryHistory;
+import org.aesh.readline.terminal.Key;
+import org.aesh.readline.terminal.formatting.TerminalString;
+import org.aesh.readline.tty.terminal.TestConnection;
+import org.aesh.readline.util.Parser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Time the completion path: a full Tab through CompletionHandler against a TestConnection,
+ * the common prefix search in Parser, formatting the candidate list and formatting
+ * the candidates of a CompleteOperationImpl, with 100, 10k and 100k candidates.
+ *
+ * Not run as part of the test suite, run it with the benchmark profile:
+ * mvn -Pbenchmark -pl readline -am test
+ * The results are written to readline/target/benchmark/CompletionBenchmark.txt, the number of
+ * seconds to run each benchmark is set with -Dbenchmark.seconds (default 2).
+ * The main method print the results instead, the optional argument is the number of seconds.
+ */
+public class CompletionBenchmark {
+
+    private static final int[] SIZES = {100, 10_000, 100_000};
+
+    // results are accumulated here so the work is not optimized away
+    private static long sink;
+
+    public static void main(String... args) {
+        benchmark((args.length > 0 ? Long.parseLong(args[0]) : 2) * 1000, System.out);
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        Path output = Paths.get(System.getProperty("benchmark.output", "target/benchmark"), "CompletionBenchmark.txt");
+        Files.createDirectories(output.getParent());
+        try(PrintStream out = new PrintStream(Files.newOutputStream(output), true, "UTF-8")) {
+            benchmark(Long.getLong("benchmark.seconds", 2) * 1000, out);
+        }
+    }
+
+    private static void benchmark(long millis, PrintStream out) {
+        out.printf("%-45s %10s %15s%n", "Benchmark", "Candidates", "us/op");
+        for(int size : SIZES) {
+            List<String> words = words(size);
+            List<TerminalString> candidates = terminalStrings(words);
+
+            run(out, "CompletionHandler.complete", size, millis, completeHandler(words));
+            run(out, "Parser.findStartsWith", size, millis, () -> Parser.findStartsWith(words).length());
+            run(out, "Parser.findStartsWithTerminalString", size, millis,
+                    () -> Parser.findStartsWithTerminalString(candidates).length());
+            run(out, "Parser.formatDisplayListTerminalString", size, millis,
+                    () -> Parser.formatDisplayListTerminalString(candidates, 40, 120).length());
+            run(out, "CompleteOperationImpl.getFormattedCandidates", size, millis, () -> {
+                //the formatting change the candidates, so a new operation is filled each time
+                CompleteOperation co = new CompleteOperationImpl("ls candidate", 12);
+                co.addCompletionCandidates(words);
+                co.setOffset(3);
+                return co.getFormattedCompletionCandidatesTerminalString().size();
+            });
+        }
+        out.println("(ignore) "+sink);
+    }
+
+    /**
+     * A Tab that display all the candidates, then clear the line
+     */
+    private static IntSupplier completeHandler(List<String> words) {
+        List<Completion> completions = Collections.singletonList(co -> {
+            co.addCompletionCandidates(words);
+            co.setOffset(3);
+        });
+        SimpleCompletionHandler completionHandler = new SimpleCompletionHandler();
+        completionHandler.setAskCompletionSize(Integer.MAX_VALUE);
+        TestReadline readline = new TestReadline(EditModeBuilder.builder().create(),
+                new InMemoryHistory(), completionHandler);
+        TestConnection connection = new TestConnection(readline, null, null, null, null);
+        connection.readline(completions);
+        return () -> {
+            connection.read("ls candidate");
+            connection.read(Key.CTRL_I);
+            connection.read(Key.CTRL_U);
+            int length = connection.getOutputBuffer().length();
+            connection.clearOutputBuffer();
+            return length;
+        };
+    }
+
+    private static void run(PrintStream out, String name, int size, long millis, IntSupplier benchmark) {
+        //warm up for half the time, then measure
+        measure(benchmark, millis / 2);
+        double nanos = measure(benchmark, millis);
+        out.printf("%-45s %10d %15.3f%n", name, size, nanos / 1000);
+    }
+
+    /**
+     * @return average time pr operation in nanoseconds
+     */
+    private static double measure(IntSupplier benchmark, long millis) {
+        long end = System.nanoTime() + millis * 1_000_000;
+        long start = System.nanoTime();
+        long operations = 0;
+        long now;
+        do {
+            sink += benchmark.getAsInt();
+            operations++;
+            now = System.nanoTime();
+        }
+        while(now < end);
+        return (double) (now - start) / operations;
+    }
+
+    private static List<String> words(int size) {
+        List<String> words = new ArrayList<>(size);
+        for(int i = 0; i < size; i++)
+            words.add("candidate" + i);
+        return words;
+    }
+
+    private static List<TerminalString> terminalStrings(List<String> words) {
+        List<TerminalString> candidates = new ArrayList<>(words.size());
+        for(String word : words)
+            candidates.add(new TerminalString(word, true));
+        return candidates;
+    }
+}
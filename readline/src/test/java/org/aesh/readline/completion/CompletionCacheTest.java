@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final Completion<CompleteOperation> completion = co -> {
+        calls.incrementAndGet();
+        String word = co.getBuffer().substring(co.getBuffer().lastIndexOf(' ') + 1);
+        for(String name : Arrays.asList("foo", "foobar", "fuu", "bar"))
+            if(name.startsWith(word))
+                co.addCompletionCandidate(name);
+        co.setOffset(co.getCursor() - word.length());
+    };
+
+    @Test
+    public void testNarrowCandidates() {
+        CompletionCache cache = new CompletionCache(10, 60000);
+        CompleteOperation co = complete(cache, "ls f");
+        assertEquals(3, co.getCompletionCandidates().size());
+        assertEquals(1, calls.get());
+
+        co = complete(cache, "ls fo");
+        assertEquals(1, calls.get());
+        assertEquals(2, co.getCompletionCandidates().size());
+        assertEquals(3, co.getOffset());
+        assertEquals("foobar", co.getCompletionCandidates().get(1).getCharacters());
+
+        //formatting modify the candidates, the cached candidates should not be affected
+        co.getFormattedCompletionCandidatesTerminalString();
+        co = complete(cache, "ls foob");
+        assertEquals(1, calls.get());
+        assertEquals(1, co.getCompletionCandidates().size());
+        assertEquals("foobar", co.getCompletionCandidates().get(0).getCharacters());
+
+        //shorter word, the completion have to run again
+        complete(cache, "ls f");
+        assertEquals(2, calls.get());
+        //another context
+        co = complete(cache, "cat f");
+        assertEquals(3, calls.get());
+        assertEquals(3, co.getCompletionCandidates().size());
+    }
+
+    @Test
+    public void testNotCached() {
+        CompletionCache cache = new CompletionCache(10, 60000);
+        Completion<CompleteOperation> notCacheable = co -> {
+            calls.incrementAndGet();
+            co.addCompletionCandidate("foo");
+            co.setCacheable(false);
+        };
+        CompleteOperation co = new CompleteOperationImpl("f", 1);
+        notCacheable.complete(co);
+        cache.store(notCacheable, co);
+        assertFalse(cache.restore(notCacheable, new CompleteOperationImpl("fo", 2), null));
+
+        complete(cache, "ls f");
+        cache.clear();
+        complete(cache, "ls fo");
+        assertEquals(3, calls.get());
+
+        //expired results are not used
+        cache = new CompletionCache(10, -1);
+        complete(cache, "ls f");
+        complete(cache, "ls fo");
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    public void testOperationWithoutCacheFlag() {
+        CompletionCache cache = new CompletionCache(10, 60000);
+        Completion<CompleteOperation> notCacheable = co -> {
+            calls.incrementAndGet();
+            co.addCompletionCandidate("foo");
+            co.setCacheable(false);
+        };
+        CompleteOperation co = new ForwardingCompleteOperation("f", 1);
+        notCacheable.complete(co);
+        assertFalse(co.isCacheable());
+        cache.store(notCacheable, co);
+        assertFalse(cache.restore(notCacheable, new ForwardingCompleteOperation("fo", 2), null));
+
+        // only operations that keep track of the flag are cached
+        co = new ForwardingCompleteOperation("ls f", 4);
+        completion.complete(co);
+        cache.store(completion, co);
+        assertFalse(cache.restore(completion, new ForwardingCompleteOperation("ls fo", 5), null));
+    }
+
+    @Test
+    public void testOperationWithoutTotal() {
+        CompleteOperation co = new ForwardingCompleteOperation("f", 1);
+        co.addCompletionCandidate("foo");
+        co.addCompletionCandidate("fuu");
+        co.setTotalCompletionCandidates(1000);
+        assertEquals(2, co.getTotalCompletionCandidates());
+
+        co = new CompleteOperationImpl("f", 1);
+        co.addCompletionCandidate("foo");
+        co.setTotalCompletionCandidates(1000);
+        assertEquals(1000, co.getTotalCompletionCandidates());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        CompletionCache cache = new CompletionCache(2, 60000);
+        complete(cache, "a f");
+        complete(cache, "b f");
+        complete(cache, "c f");
+        assertEquals(3, calls.get());
+        assertTrue(cache.restore(completion, new CompleteOperationImpl("c fo", 4), null));
+        assertFalse(cache.restore(completion, new CompleteOperationImpl("a fo", 4), null));
+    }
+
+    private CompleteOperation complete(CompletionCache cache, String buffer) {
+        CompleteOperation co = new CompleteOperationImpl(buffer, buffer.length());
+        if(!cache.restore(completion, co, null)) {
+            completion.complete(co);
+            cache.store(completion, co);
+        }
+        return co;
+    }
+}
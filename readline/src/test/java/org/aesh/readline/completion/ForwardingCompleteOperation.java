@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.terminal.formatting.TerminalString;
+
+import java.util.List;
+
+/**
+ * A CompleteOperation that only implement the abstract methods, used to test the default methods.
+ */
+class ForwardingCompleteOperation implements CompleteOperation {
+
+    private final CompleteOperation delegate;
+
+    ForwardingCompleteOperation(String buffer, int cursor) {
+        delegate = new CompleteOperationImpl(buffer, cursor);
+    }
+
+    @Override
+    public String getBuffer() {
+        return delegate.getBuffer();
+    }
+
+    @Override
+    public int getCursor() {
+        return delegate.getCursor();
+    }
+
+    @Override
+    public int getOffset() {
+        return delegate.getOffset();
+    }
+
+    @Override
+    public void setOffset(int offset) {
+        delegate.setOffset(offset);
+    }
+
+    @Override
+    public void setIgnoreOffset(boolean ignoreOffset) {
+        delegate.setIgnoreOffset(ignoreOffset);
+    }
+
+    @Override
+    public boolean doIgnoreOffset() {
+        return delegate.doIgnoreOffset();
+    }
+
+    @Override
+    public char getSeparator() {
+        return delegate.getSeparator();
+    }
+
+    @Override
+    public void setSeparator(char separator) {
+        delegate.setSeparator(separator);
+    }
+
+    @Override
+    public boolean hasAppendSeparator() {
+        return delegate.hasAppendSeparator();
+    }
+
+    @Override
+    public void doAppendSeparator(boolean appendSeparator) {
+        delegate.doAppendSeparator(appendSeparator);
+    }
+
+    @Override
+    public List<TerminalString> getCompletionCandidates() {
+        return delegate.getCompletionCandidates();
+    }
+
+    @Override
+    public void addCompletionCandidate(TerminalString completionCandidate) {
+        delegate.addCompletionCandidate(completionCandidate);
+    }
+
+    @Override
+    public void addCompletionCandidate(String completionCandidate) {
+        delegate.addCompletionCandidate(completionCandidate);
+    }
+
+    @Override
+    public void addCompletionCandidates(List<String> completionCandidates) {
+        delegate.addCompletionCandidates(completionCandidates);
+    }
+
+    @Override
+    public void addCompletionCandidatesTerminalString(List<TerminalString> completionCandidates) {
+        delegate.addCompletionCandidatesTerminalString(completionCandidates);
+    }
+
+    @Override
+    public void removeEscapedSpacesFromCompletionCandidates() {
+        delegate.removeEscapedSpacesFromCompletionCandidates();
+    }
+
+    @Override
+    public List<String> getFormattedCompletionCandidates() {
+        return delegate.getFormattedCompletionCandidates();
+    }
+
+    @Override
+    public List<TerminalString> getFormattedCompletionCandidatesTerminalString() {
+        return delegate.getFormattedCompletionCandidatesTerminalString();
+    }
+
+    @Override
+    public String getFormattedCompletion(String completion) {
+        return delegate.getFormattedCompletion(completion);
+    }
+
+    @Override
+    public boolean isIgnoreStartsWith() {
+        return delegate.isIgnoreStartsWith();
+    }
+
+    @Override
+    public void setIgnoreStartsWith(boolean ignoreStartsWith) {
+        delegate.setIgnoreStartsWith(ignoreStartsWith);
+    }
+
+    @Override
+    public boolean doIgnoreNonEscapedSpace() {
+        return delegate.doIgnoreNonEscapedSpace();
+    }
+
+    @Override
+    public void setIgnoreNonEscapedSpace(boolean ignoreNonEscapedSpace) {
+        delegate.setIgnoreNonEscapedSpace(ignoreNonEscapedSpace);
+    }
+}
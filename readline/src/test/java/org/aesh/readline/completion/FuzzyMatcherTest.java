@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FuzzyMatcherTest {
+
+    private final CompletionMatcher matcher = CompletionMatcher.FUZZY;
+
+    @Test
+    public void testMatch() {
+        assertNotEquals(CompletionMatcher.NO_MATCH, matcher.score("gcb", "git-create-branch"));
+        assertNotEquals(CompletionMatcher.NO_MATCH, matcher.score("GCB", "git-create-branch"));
+        assertEquals(matcher.score("gcb", "git-create-branch"), matcher.score("GCB", "git-create-branch"));
+        assertEquals(CompletionMatcher.NO_MATCH, matcher.score("bcg", "git-create-branch"));
+        assertEquals(CompletionMatcher.NO_MATCH, matcher.score("gitt", "git"));
+        assertEquals(0, matcher.score("", "git"));
+    }
+
+    @Test
+    public void testRanking() {
+        //word boundaries
+        assertTrue(matcher.score("gcb", "git-create-branch") > matcher.score("gcb", "logic_bar"));
+        assertTrue(matcher.score("gcb", "git-create-branch") > matcher.score("gcb", "gitcombine"));
+        //camel case
+        assertTrue(matcher.score("gcb", "getCurrentBranch") > matcher.score("gcb", "logic_bar"));
+        //consecutive matches
+        assertTrue(matcher.score("foo", "foobar") > matcher.score("foo", "fxoxo"));
+        //start of the candidate
+        assertTrue(matcher.score("bar", "barfoo") > matcher.score("bar", "foo-bar"));
+    }
+}
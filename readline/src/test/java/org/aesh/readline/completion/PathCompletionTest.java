@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.terminal.formatting.TerminalString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathCompletionTest {
+
+    private Path root;
+    private PathCompletion completion;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("aesh-path-completion");
+        Files.createFile(root.resolve("foo.txt"));
+        Files.createFile(root.resolve("foo bar.txt"));
+        Files.createFile(root.resolve(".hidden"));
+        Files.createDirectories(root.resolve("folder").resolve("sub"));
+        Files.createFile(root.resolve("folder").resolve("file1"));
+        completion = new PathCompletion(root);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        completion.close();
+        try(Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testComplete() {
+        CompleteOperation co = complete("ls fo");
+        assertEquals(Arrays.asList("folder/", "foo\\ bar.txt", "foo.txt"), candidates(co));
+        assertEquals(3, co.getOffset());
+
+        co = complete("ls foo\\ b");
+        assertEquals(Collections.singletonList("foo\\ bar.txt"), candidates(co));
+        assertEquals(3, co.getOffset());
+        assertTrue(co.hasAppendSeparator());
+
+        co = complete("ls fol");
+        assertEquals(Collections.singletonList("folder/"), candidates(co));
+        assertFalse(co.hasAppendSeparator());
+
+        co = complete("ls folder/");
+        assertEquals(Arrays.asList("file1", "sub/"), candidates(co));
+        assertEquals(10, co.getOffset());
+
+        co = complete("ls " + root.resolve("folder").toString() + "/f");
+        assertEquals(Collections.singletonList("file1"), candidates(co));
+
+        assertEquals(1, complete("ls .").getCompletionCandidates().size());
+        assertTrue(complete("ls bar").getCompletionCandidates().isEmpty());
+        assertTrue(complete("ls nothere/").getCompletionCandidates().isEmpty());
+    }
+
+    @Test
+    public void testCacheIsInvalidated() throws Exception {
+        assertEquals(2, complete("ls foo").getCompletionCandidates().size());
+        assertTrue(completion.isCached(root));
+
+        Files.createFile(root.resolve("foo2"));
+        long end = System.currentTimeMillis() + 10000;
+        while(complete("ls foo").getCompletionCandidates().size() != 3 && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(3, complete("ls foo").getCompletionCandidates().size());
+    }
+
+    @Test
+    public void testChangeOnlyInvalidatesItsDirectory() throws Exception {
+        completion.setPrefetchExecutor(null);
+        complete("ls fo");
+        complete("ls folder/");
+        assertTrue(completion.isCached(root));
+        assertTrue(completion.isCached(root.resolve("folder")));
+
+        Files.createFile(root.resolve("foo2"));
+        long end = System.currentTimeMillis() + 10000;
+        while(completion.isCached(root) && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertFalse(completion.isCached(root));
+        assertTrue(completion.isCached(root.resolve("folder")));
+    }
+
+    @Test
+    public void testWatchIsShared() throws Exception {
+        complete("ls foo");
+        PathCompletion other = new PathCompletion(root);
+        assertEquals(2, complete(other, "ls foo").getCompletionCandidates().size());
+        other.close();
+        //closing the other instance must not stop watching the directory
+        assertTrue(completion.isCached(root));
+
+        Files.createFile(root.resolve("foo2"));
+        long end = System.currentTimeMillis() + 10000;
+        while(complete("ls foo").getCompletionCandidates().size() != 3 && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(3, complete("ls foo").getCompletionCandidates().size());
+    }
+
+    @Test
+    public void testBackslashIsNotASeparator() {
+        assertTrue(complete("ls folder\\f").getCompletionCandidates().isEmpty());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        complete("ls fol");
+        long end = System.currentTimeMillis() + 10000;
+        while(!completion.isCached(root.resolve("folder")) && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertTrue(completion.isCached(root.resolve("folder")));
+        assertFalse(completion.isCached(root.resolve("folder").resolve("sub")));
+    }
+
+    private CompleteOperation complete(String buffer) {
+        return complete(completion, buffer);
+    }
+
+    private static CompleteOperation complete(PathCompletion completion, String buffer) {
+        CompleteOperation co = new CompleteOperationImpl(buffer, buffer.length());
+        completion.complete(co);
+        return co;
+    }
+
+    private static List<String> candidates(CompleteOperation co) {
+        List<String> candidates = new ArrayList<>();
+        for(TerminalString candidate : co.getCompletionCandidates())
+            candidates.add(candidate.getCharacters());
+        return candidates;
+    }
+}
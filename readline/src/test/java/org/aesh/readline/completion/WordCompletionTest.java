@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.completion;
+
+import org.aesh.readline.terminal.formatting.TerminalString;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WordCompletionTest {
+
+    @Test
+    public void testFind() {
+        WordCompletion completion = new WordCompletion("foo", "foobar", "foobaz", "fuu", "bar", "foo", "");
+        assertEquals(6, completion.size());
+        assertEquals(Arrays.asList("foo", "foobar", "foobaz"), completion.find("fo"));
+        assertEquals(Arrays.asList("foobar", "foobaz"), completion.find("foob"));
+        assertEquals(Collections.singletonList("fuu"), completion.find("fuu"));
+        assertEquals(Arrays.asList("", "bar", "foo", "foobar", "foobaz", "fuu"), completion.find(""));
+        assertTrue(completion.find("fooc").isEmpty());
+        assertTrue(completion.find("foobarr").isEmpty());
+        assertTrue(new WordCompletion().find("").isEmpty());
+    }
+
+    @Test
+    public void testManyWords() {
+        List<String> words = new ArrayList<>();
+        for(int i = 0; i < 5000; i++)
+            words.add("command" + i);
+        WordCompletion completion = new WordCompletion(words);
+        assertEquals(1111, completion.find("command1").size());
+        assertEquals(111, completion.find("command42").size());
+        assertEquals(Collections.singletonList("command4999"), completion.find("command4999"));
+    }
+
+    @Test
+    public void testComplete() {
+        WordCompletion completion = new WordCompletion("commit", "config", "clone");
+
+        CompleteOperation co = new CompleteOperationImpl("git co", 6);
+        completion.complete(co);
+        assertEquals(2, co.getCompletionCandidates().size());
+        assertEquals(4, co.getOffset());
+        assertEquals(Arrays.asList("mmit", "nfig"), co.getFormattedCompletionCandidates());
+
+        co = new CompleteOperationImpl("git ", 4);
+        completion.complete(co);
+        assertEquals(3, co.getCompletionCandidates().size());
+
+        co = new CompleteOperationImpl("git push", 8);
+        completion.complete(co);
+        assertTrue(co.getCompletionCandidates().isEmpty());
+    }
+
+    @Test
+    public void testCompleteEscapedSpace() {
+        WordCompletion completion = new WordCompletion("foo bar", "foo baz", "foobar");
+
+        CompleteOperation co = new CompleteOperationImpl("cat foo\\ b", 10);
+        completion.complete(co);
+        assertEquals(4, co.getOffset());
+        List<String> candidates = new ArrayList<>();
+        for(TerminalString candidate : co.getCompletionCandidates())
+            candidates.add(candidate.getCharacters());
+        assertEquals(Arrays.asList("foo\\ bar", "foo\\ baz"), candidates);
+
+        co = new CompleteOperationImpl("cat foo b", 9);
+        completion.complete(co);
+        assertTrue(co.getCompletionCandidates().isEmpty());
+    }
+
+    @Test
+    public void testFuzzyMatch() {
+        WordCompletion completion = new WordCompletion(CompletionMatcher.FUZZY,
+                Arrays.asList("logic_bar", "git-commit", "git-create-branch", "status"));
+        assertEquals(Arrays.asList("git-create-branch", "logic_bar"), completion.match("gcb"));
+        assertEquals(4, completion.match("").size());
+
+        CompleteOperation co = new CompleteOperationImpl("git gcb", 7);
+        completion.complete(co);
+        assertEquals(2, co.getCompletionCandidates().size());
+        assertEquals(4, co.getOffset());
+        assertTrue(co.isIgnoreStartsWith());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CompactHistoryTest {
+
+    @Test
+    public void testArenaEncoding() {
+        CodePointArena arena = new CodePointArena();
+        int[] ascii = Parser.toCodePoints("git status");
+        int[] latin1 = Parser.toCodePoints("blåbærsyltetøy");
+        int[] utf8 = Parser.toCodePoints("echo ∑ 日本語 😀");
+        arena.add(ascii);
+        arena.add(latin1);
+        arena.add(utf8);
+        arena.add(new int[]{});
+
+        assertEquals(4, arena.size());
+        assertArrayEquals(ascii, arena.get(0));
+        assertArrayEquals(latin1, arena.get(1));
+        assertArrayEquals(utf8, arena.get(2));
+        assertArrayEquals(new int[]{}, arena.get(3));
+
+        arena.remove(1);
+        assertArrayEquals(ascii, arena.get(0));
+        assertArrayEquals(utf8, arena.get(1));
+        arena.remove(0);
+        assertArrayEquals(utf8, arena.get(0));
+        assertEquals(2, arena.size());
+    }
+
+    @Test
+    public void testArenaGrowAndCompact() {
+        CodePointArena arena = new CodePointArena();
+        for(int i=0; i < 5000; i++) {
+            arena.add(Parser.toCodePoints("command number "+i+" ø"));
+            if(arena.size() > 100)
+                arena.remove(0);
+        }
+        assertEquals(100, arena.size());
+        assertArrayEquals(Parser.toCodePoints("command number 4900 ø"), arena.get(0));
+        assertArrayEquals(Parser.toCodePoints("command number 4999 ø"), arena.get(99));
+    }
+
+    @Test
+    public void testHistory() {
+        History history = new CompactHistory(20);
+        for(int i=0; i < 25; i++)
+            history.push(Parser.toCodePoints("foo"+i));
+        history.push(Parser.toCodePoints("foo24"));
+
+        assertEquals(20, history.size());
+        assertArrayEquals(Parser.toCodePoints("foo24"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo23"), history.getPreviousFetch());
+
+        history.setSearchDirection(SearchDirection.REVERSE);
+        assertArrayEquals(Parser.toCodePoints("foo19"), history.search(Parser.toCodePoints("19")));
+        assertArrayEquals(Parser.toCodePoints("foo5"), history.get(0));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compare the heap used by InMemoryHistory and CompactHistory when filled
+ * with typical command lines.
+ * Not run as part of the test suite, run it with the benchmark profile (which fix the heap size):
+ * mvn -Pbenchmark -pl readline -am test
+ * The results are written to readline/target/benchmark/HistoryMemoryBenchmark.txt, the number of
+ * entries is set with -Dbenchmark.entries (default 200000).
+ * The main method print the results instead, run it with a fixed heap, eg: -Xms512m -Xmx512m
+ */
+public class HistoryMemoryBenchmark {
+
+    private static final String[] COMMANDS = {
+            "ls -la /var/log",
+            "git commit -am \"fix the build\"",
+            "mvn -B clean install -DskipTests",
+            "kubectl get pods --namespace production -o wide",
+            "cd ~/projects/aesh-readline/readline/src/main/java",
+            "echo blåbærsyltetøy > /tmp/ø.txt"
+    };
+
+    public static void main(String... args) {
+        benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 200_000, System.out);
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        Path output = Paths.get(System.getProperty("benchmark.output", "target/benchmark"), "HistoryMemoryBenchmark.txt");
+        Files.createDirectories(output.getParent());
+        try(PrintStream out = new PrintStream(Files.newOutputStream(output), true, "UTF-8")) {
+            benchmark(Integer.getInteger("benchmark.entries", 200_000), out);
+        }
+    }
+
+    private static void benchmark(int entries, PrintStream out) {
+        out.println("Entries: "+entries);
+        out.println("InMemoryHistory: "+measure(new InMemoryHistory(-1), entries)+" bytes");
+        out.println("CompactHistory:  "+measure(new CompactHistory(-1), entries)+" bytes");
+    }
+
+    private static long measure(History history, int entries) {
+        long before = usedMemory();
+        for(int i = 0; i < entries; i++)
+            history.push(Parser.toCodePoints(COMMANDS[i % COMMANDS.length]+" #"+i));
+        long used = usedMemory() - before;
+        if(history.size() != entries)
+            throw new IllegalStateException("Expected "+entries+" entries, got "+history.size());
+        return used;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -30,10 +30,14 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -318,4 +322,258 @@ public class HistoryTest {
         assertArrayEquals(Parser.toCodePoints("foo3"), history.getPreviousFetch());
 
     }
+
+    @Test
+    public void testFind() {
+        History history = new InMemoryHistory(3);
+        history.push(Parser.toCodePoints("foo1"));
+        history.push(Parser.toCodePoints("foo2"));
+        history.push(Parser.toCodePoints("foo1"));
+
+        assertArrayEquals(Parser.toCodePoints("foo2"), history.find(Parser.toCodePoints("foo2")));
+        assertArrayEquals(Parser.toCodePoints("foo1"), history.find(Parser.toCodePoints("foo1")));
+        assertNull(history.find(Parser.toCodePoints("foo3")));
+
+        history.push(Parser.toCodePoints("foo3"));
+        history.push(Parser.toCodePoints("foo4"));
+        assertNull(history.find(Parser.toCodePoints("foo2")));
+        assertArrayEquals(Parser.toCodePoints("foo1"), history.find(Parser.toCodePoints("foo1")));
+        history.push(Parser.toCodePoints("foo5"));
+        assertNull(history.find(Parser.toCodePoints("foo1")));
+
+        history = new CompactHistory(10);
+        history.push(Parser.toCodePoints("foo1"));
+        history.push(Parser.toCodePoints("foo2"));
+        assertArrayEquals(Parser.toCodePoints("foo1"), history.find(Parser.toCodePoints("foo1")));
+        assertNull(history.find(Parser.toCodePoints("foo3")));
+    }
+
+    @Test
+    public void testEraseDuplicates() {
+        InMemoryHistory history = new InMemoryHistory(10);
+        history.push(Parser.toCodePoints("1"));
+        history.push(Parser.toCodePoints("2"));
+        history.push(Parser.toCodePoints("1"));
+        history.push(Parser.toCodePoints("3"));
+        assertEquals(4, history.size());
+
+        history.setEraseDuplicates(true);
+        assertEquals(3, history.size());
+        assertArrayEquals(Parser.toCodePoints("2"), history.get(0));
+
+        history.push(Parser.toCodePoints("2"));
+        assertEquals(3, history.size());
+        assertArrayEquals(Parser.toCodePoints("2"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("3"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("1"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("1"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("2"), history.find(Parser.toCodePoints("2")));
+    }
+
+    @Test
+    public void testPrefixSearchWhileEvicting() {
+        InMemoryHistory history = new InMemoryHistory(8);
+        history.setEraseDuplicates(true);
+        Random random = new Random(42);
+        int[] prefix = Parser.toCodePoints("a");
+        for(int i = 0; i < 500; i++) {
+            history.push(Parser.toCodePoints(Integer.toString(random.nextInt(40), 11).replace('1', 'a')));
+
+            List<String> expected = new ArrayList<>();
+            List<int[]> all = history.getAll();
+            for(int j = all.size() - 1; j >= 0; j--)
+                if(Parser.arrayStartsWith(all.get(j), prefix))
+                    expected.add(Parser.fromCodePoints(all.get(j)));
+            List<String> found = new ArrayList<>();
+            for(int[] line = history.searchPrefix(prefix, SearchDirection.REVERSE); line != null;
+                line = history.searchPrefix(prefix, SearchDirection.REVERSE))
+                found.add(Parser.fromCodePoints(line));
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testPrefixSearch() {
+        History history = new InMemoryHistory(5);
+        history.push(Parser.toCodePoints("git status"));
+        history.push(Parser.toCodePoints("ls"));
+        history.push(Parser.toCodePoints("git commit"));
+        history.push(Parser.toCodePoints("gitk"));
+        history.push(Parser.toCodePoints("git push"));
+
+        int[] prefix = Parser.toCodePoints("git ");
+        assertArrayEquals(Parser.toCodePoints("git push"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git commit"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git status"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertNull(history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git commit"), history.searchPrefix(prefix, SearchDirection.FORWARD));
+        assertArrayEquals(Parser.toCodePoints("ls"), history.getPreviousFetch());
+
+        history.push(Parser.toCodePoints("git status"));
+        assertEquals(5, history.size());
+        assertArrayEquals(Parser.toCodePoints("git status"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git push"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git commit"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertNull(history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("ls"), history.searchPrefix(new int[]{'l'}, SearchDirection.REVERSE));
+
+        SharedHistory shared = new SharedHistory(10);
+        History session = shared.newSession();
+        session.push(Parser.toCodePoints("git status"));
+        session.push(Parser.toCodePoints("ls"));
+        session.push(Parser.toCodePoints("git push"));
+        assertArrayEquals(Parser.toCodePoints("git push"), session.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git status"), session.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("git push"), session.searchPrefix(prefix, SearchDirection.FORWARD));
+    }
+
+    @Test
+    public void testHistorySearchBackwardAction() throws Exception {
+        TestConnection term = new TestConnection(EditModeBuilder.builder(EditMode.Mode.EMACS)
+                .addAction(Key.UP.getKeyValues(), "history-search-backward")
+                .addAction(Key.DOWN.getKeyValues(), "history-search-forward")
+                .create());
+        term.read("git status"+ Config.getLineSeparator());
+        term.readline();
+        term.read("ls"+Config.getLineSeparator());
+        term.readline();
+        term.read("git push"+Config.getLineSeparator());
+        term.readline();
+        term.clearLineBuffer();
+        term.read("git");
+        term.read(Key.UP);
+        term.read(Key.UP);
+        term.read(Key.UP);
+        term.read(Key.DOWN);
+        term.read(Key.ENTER);
+        term.assertLine("git push");
+    }
+
+    @Test
+    public void testHistorySearchForwardRestoreLine() throws Exception {
+        TestConnection term = new TestConnection(EditModeBuilder.builder(EditMode.Mode.EMACS)
+                .addAction(Key.UP.getKeyValues(), "history-search-backward")
+                .addAction(Key.DOWN.getKeyValues(), "history-search-forward")
+                .create());
+        term.read("git status"+ Config.getLineSeparator());
+        term.readline();
+        term.read("ls"+Config.getLineSeparator());
+        term.readline();
+        term.read("git push"+Config.getLineSeparator());
+        term.readline();
+        term.clearLineBuffer();
+        term.read("git s");
+        term.read(Key.CTRL_B);
+        term.read(Key.CTRL_B);
+        term.read(Key.UP);
+        term.read(Key.UP);
+        term.read(Key.DOWN);
+        term.assertBuffer("git push");
+        //past the newest match, back to the line that was typed
+        term.read(Key.DOWN);
+        term.assertBuffer("git s");
+        term.read("t");
+        term.read(Key.ENTER);
+        term.assertLine("gitt s");
+    }
+
+    @Test
+    public void testPrefixSearchNotFound() {
+        History history = new InMemoryHistory(10);
+        history.push(Parser.toCodePoints("git status"));
+        history.push(Parser.toCodePoints("ls"));
+        history.push(Parser.toCodePoints("git push"));
+        int[] prefix = Parser.toCodePoints("git ");
+        assertTrue(history.isFetchAtEnd());
+        assertArrayEquals(Parser.toCodePoints("git push"), history.searchPrefix(prefix, SearchDirection.REVERSE));
+        assertFalse(history.isFetchAtEnd());
+        assertNull(history.searchPrefix(prefix, SearchDirection.FORWARD));
+        assertTrue(history.isFetchAtEnd());
+
+        // the default search move back when nothing matched
+        history = new DefaultSearchHistory();
+        history.push(Parser.toCodePoints("git status"));
+        history.push(Parser.toCodePoints("ls"));
+        history.push(Parser.toCodePoints("git push"));
+        assertArrayEquals(Parser.toCodePoints("git push"), history.getPreviousFetch());
+        assertNull(history.searchPrefix(Parser.toCodePoints("cd"), SearchDirection.REVERSE));
+        assertArrayEquals(Parser.toCodePoints("ls"), history.getPreviousFetch());
+    }
+
+    /**
+     * Use the default prefix search of History
+     */
+    private static class DefaultSearchHistory extends History {
+        private final History history = new InMemoryHistory(10);
+
+        @Override
+        public void push(int[] entry) {
+            history.push(entry);
+        }
+
+        @Override
+        public int[] find(int[] search) {
+            return history.find(search);
+        }
+
+        @Override
+        public int[] get(int index) {
+            return history.get(index);
+        }
+
+        @Override
+        public int size() {
+            return history.size();
+        }
+
+        @Override
+        public void setSearchDirection(SearchDirection direction) {
+            history.setSearchDirection(direction);
+        }
+
+        @Override
+        public SearchDirection getSearchDirection() {
+            return history.getSearchDirection();
+        }
+
+        @Override
+        public int[] getNextFetch() {
+            return history.getNextFetch();
+        }
+
+        @Override
+        public int[] getPreviousFetch() {
+            return history.getPreviousFetch();
+        }
+
+        @Override
+        public int[] search(int[] search) {
+            return history.search(search);
+        }
+
+        @Override
+        public void setCurrent(int[] line) {
+            history.setCurrent(line);
+        }
+
+        @Override
+        public int[] getCurrent() {
+            return history.getCurrent();
+        }
+
+        @Override
+        public List<int[]> getAll() {
+            return history.getAll();
+        }
+
+        @Override
+        public void clear() {
+            history.clear();
+        }
+
+        @Override
+        public void stop() {
+            history.stop();
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SharedHistoryTest {
+
+    @Test
+    public void testSessionsHaveOwnCursor() {
+        SharedHistory shared = new SharedHistory(20);
+        History first = shared.newSession();
+        History second = shared.newSession();
+        first.push(Parser.toCodePoints("foo1"));
+        second.push(Parser.toCodePoints("foo2"));
+        first.push(Parser.toCodePoints("foo3"));
+
+        assertEquals(3, shared.size());
+        assertArrayEquals(Parser.toCodePoints("foo3"), first.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo2"), first.getPreviousFetch());
+
+        assertArrayEquals(Parser.toCodePoints("foo3"), second.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo1"), first.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo1"), first.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo2"), first.getNextFetch());
+        assertArrayEquals(Parser.toCodePoints("foo2"), second.getPreviousFetch());
+    }
+
+    @Test
+    public void testNotLiveSession() {
+        SharedHistory shared = new SharedHistory(20);
+        History live = shared.newSession();
+        live.push(Parser.toCodePoints("foo1"));
+        History local = shared.newSession(false);
+        live.push(Parser.toCodePoints("foo2"));
+        local.push(Parser.toCodePoints("foo3"));
+
+        assertEquals(3, live.size());
+        assertEquals(2, local.size());
+        assertArrayEquals(Parser.toCodePoints("foo3"), local.get(1));
+        assertArrayEquals(Parser.toCodePoints("foo3"), local.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo1"), local.getPreviousFetch());
+        assertNull(local.find(Parser.toCodePoints("foo2")));
+        assertArrayEquals(Parser.toCodePoints("foo2"), live.find(Parser.toCodePoints("foo2")));
+    }
+
+    @Test
+    public void testSearch() {
+        SharedHistory shared = new SharedHistory(20);
+        History history = shared.newSession();
+        history.push(Parser.toCodePoints("foo1"));
+        shared.newSession().push(Parser.toCodePoints("foo2"));
+        history.push(Parser.toCodePoints("foo3"));
+
+        history.setSearchDirection(SearchDirection.REVERSE);
+        assertArrayEquals(Parser.toCodePoints("foo3"),history.search(Parser.toCodePoints("foo")) );
+        assertArrayEquals(Parser.toCodePoints("foo2"),history.search(Parser.toCodePoints("foo")) );
+        assertArrayEquals(Parser.toCodePoints("foo1"),history.search(Parser.toCodePoints("foo")) );
+
+        history.setSearchDirection(SearchDirection.FORWARD);
+        assertArrayEquals(Parser.toCodePoints("foo1"),history.search(Parser.toCodePoints("foo")) );
+        assertArrayEquals(Parser.toCodePoints("foo2"),history.search(Parser.toCodePoints("foo")) );
+        assertArrayEquals(Parser.toCodePoints("foo3"),history.search(Parser.toCodePoints("foo")) );
+    }
+
+    @Test
+    public void testMaxSizeAndDupes() {
+        SharedHistory shared = new SharedHistory(10);
+        History history = shared.newSession();
+        for(int i=0; i < 25; i++)
+            history.push(Parser.toCodePoints(String.valueOf(i)));
+        history.push(Parser.toCodePoints("24"));
+
+        assertEquals(10, history.size());
+        assertArrayEquals(Parser.toCodePoints("15"), history.get(0));
+        assertArrayEquals(Parser.toCodePoints("24"), history.getPreviousFetch());
+
+        history.clear();
+        assertEquals(0, shared.size());
+        assertArrayEquals(new int[]{}, history.getPreviousFetch());
+    }
+
+    @Test
+    public void testConcurrentPush() throws InterruptedException {
+        SharedHistory shared = new SharedHistory(10000);
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t < 8; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                History session = shared.newSession();
+                for(int i=0; i < 1000; i++)
+                    session.push(Parser.toCodePoints(id+"-"+i));
+            }));
+        }
+        threads.forEach(Thread::start);
+        for(Thread thread : threads)
+            thread.join();
+
+        assertEquals(8000, shared.size());
+        assertEquals(8000, shared.getAll().size());
+    }
+
+    @Test
+    public void testUnpublishedSlotDoNotBlock() {
+        SharedHistory shared = new SharedHistory(4);
+        History history = shared.newSession();
+        history.push(Parser.toCodePoints("foo1"));
+        // a writer that reserved a slot and never published its entry
+        shared.reserveSlot();
+        history.push(Parser.toCodePoints("foo2"));
+
+        // the unpublished slot is skipped the same way by size, get and getAll
+        assertEquals(2, shared.size());
+        assertEquals(2, history.size());
+        assertEquals(2, shared.getAll().size());
+        for(int i = 0; i < history.size(); i++)
+            assertArrayEquals(shared.getAll().get(i), history.get(i));
+        assertArrayEquals(Parser.toCodePoints("foo2"), history.get(1));
+        assertArrayEquals(Parser.toCodePoints("foo2"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("foo1"), history.getPreviousFetch());
+
+        for(int i = 3; i < 10; i++)
+            history.push(Parser.toCodePoints("foo" + i));
+        assertEquals(4, shared.getAll().size());
+        assertArrayEquals(Parser.toCodePoints("foo6"), shared.getAll().get(0));
+    }
+}
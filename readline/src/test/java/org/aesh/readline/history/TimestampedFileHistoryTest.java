@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.history;
+
+import org.aesh.readline.util.Parser;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimestampedFileHistoryTest {
+
+    @Test
+    public void testTimeRange() throws IOException {
+        File file = File.createTempFile("aesh-history", ".bin");
+        file.deleteOnExit();
+        new File(file.getPath()+".idx").deleteOnExit();
+
+        TimestampedFileHistory history = new TimestampedFileHistory(file, 10, "session1", false);
+        for(int i = 0; i < 1000; i++)
+            history.push(Parser.toCodePoints("command "+i), 1000L + i);
+        // repeated entries are stored in the file, but not in memory
+        history.push(Parser.toCodePoints("command 999"), 5000L);
+        assertEquals(10, history.size());
+
+        List<HistoryEntry> entries = collect(history.getEntries(1500L, 1510L));
+        assertEquals(10, entries.size());
+        assertArrayEquals(Parser.toCodePoints("command 500"), entries.get(0).getLine());
+        assertEquals(1500L, entries.get(0).getTimestamp());
+        assertEquals("session1", entries.get(0).getSessionId());
+        assertEquals(1, collect(history.getEntries(4000L, 6000L)).size());
+
+        // the last ten records contain the repeated entry
+        history = new TimestampedFileHistory(file, 10, "session2", false);
+        assertEquals(9, history.size());
+        assertArrayEquals(Parser.toCodePoints("command 999"), history.getPreviousFetch());
+        assertArrayEquals(Parser.toCodePoints("command 998"), history.getPreviousFetch());
+        history.push(Parser.toCodePoints("foo"), 6000L);
+
+        entries = collect(history.getEntries(4000L, Long.MAX_VALUE));
+        assertEquals(2, entries.size());
+        assertEquals("session2", entries.get(1).getSessionId());
+        assertEquals(1002, collect(history.getEntries(Long.MIN_VALUE, Long.MAX_VALUE)).size());
+    }
+
+    @Test
+    public void testSessionIdLength() throws IOException {
+        File file = File.createTempFile("aesh-history", ".bin");
+        file.deleteOnExit();
+        new File(file.getPath()+".idx").deleteOnExit();
+
+        StringBuilder sessionId = new StringBuilder();
+        for(int i = 0; i < HistoryLog.MAX_SESSION_LENGTH; i++)
+            sessionId.append('s');
+        TimestampedFileHistory history = new TimestampedFileHistory(file, 10, sessionId.toString(), false);
+        assertTrue(history.supportsTimestamps());
+        history.push(Parser.toCodePoints("foo"), 1L);
+        history.push(Parser.toCodePoints("bar"), 2L);
+        List<HistoryEntry> entries = collect(history.getEntries(0L, 10L));
+        assertEquals(2, entries.size());
+        assertEquals(sessionId.toString(), entries.get(0).getSessionId());
+        assertArrayEquals(Parser.toCodePoints("bar"), entries.get(1).getLine());
+
+        sessionId.append('s');
+        try {
+            new TimestampedFileHistory(file, 10, sessionId.toString(), false);
+            fail("session id longer than "+HistoryLog.MAX_SESSION_LENGTH+" bytes should be rejected");
+        }
+        catch(IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNoTimestamps() {
+        History history = new InMemoryHistory(10);
+        history.push(Parser.toCodePoints("foo"));
+        assertFalse(history.supportsTimestamps());
+        assertFalse(history.getEntries(Long.MIN_VALUE, Long.MAX_VALUE).iterator().hasNext());
+    }
+
+    @Test
+    public void testRebuildIndex() throws IOException {
+        File file = File.createTempFile("aesh-history", ".bin");
+        file.deleteOnExit();
+        File index = new File(file.getPath()+".idx");
+        index.deleteOnExit();
+
+        TimestampedFileHistory history = new TimestampedFileHistory(file, 50);
+        for(int i = 0; i < 300; i++)
+            history.push(Parser.toCodePoints("command "+i), i);
+        assertTrue(index.delete());
+        // simulate a record that was only partially written
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(out.length());
+            out.writeInt(100);
+        }
+
+        history = new TimestampedFileHistory(file, 50);
+        assertTrue(index.exists());
+        assertEquals(50, history.size());
+        assertEquals(100, collect(history.getEntries(100, 200)).size());
+        history.push(Parser.toCodePoints("blåbær \uD83D\uDE00"), 300);
+        assertArrayEquals(Parser.toCodePoints("blåbær \uD83D\uDE00"),
+                collect(history.getEntries(300, 301)).get(0).getLine());
+    }
+
+    @Test
+    public void testExportText() throws IOException {
+        File file = File.createTempFile("aesh-history", ".bin");
+        file.deleteOnExit();
+        new File(file.getPath()+".idx").deleteOnExit();
+        File text = File.createTempFile("aesh-history", ".txt");
+        text.deleteOnExit();
+
+        TimestampedFileHistory history = new TimestampedFileHistory(file, 10);
+        history.push(Parser.toCodePoints("foo1"));
+        history.push(Parser.toCodePoints("foo2 bar"));
+        history.exportText(text);
+
+        FileHistory fileHistory = new FileHistory(text, 10);
+        assertEquals(2, fileHistory.size());
+        assertArrayEquals(Parser.toCodePoints("foo1"), fileHistory.get(0));
+        assertArrayEquals(Parser.toCodePoints("foo2 bar"), fileHistory.get(1));
+    }
+
+    private static List<HistoryEntry> collect(Iterable<HistoryEntry> entries) {
+        List<HistoryEntry> list = new ArrayList<>();
+        entries.forEach(list::add);
+        return list;
+    }
+}
@@ -9,11 +9,13 @@ import org.aesh.readline.util.Parser;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -79,4 +81,31 @@ public class DeviceTest {
         device.puts(output, Capability.clear_screen);
     }
 
+    @Test
+    public void testCompiledCapabilities() {
+        TerminalDevice device = new TerminalDevice("test");
+        device.addCapability(Capability.clear_screen, "\\E[H\\E[2J");
+        device.addCapability(Capability.bell, "^G");
+        device.addCapability(Capability.carriage_return, "\\r\\0123\\x1b\\C-a\\M-b\\");
+
+        List<int[]> out = new ArrayList<>();
+        device.puts(out::add, Capability.clear_screen);
+        assertArrayEquals(new int[]{27, '[', 'H', 27, '[', '2', 'J'}, out.get(0));
+        //the output get a copy, changing it do not change the capability
+        out.get(0)[0] = 'x';
+        device.puts(out::add, Capability.clear_screen);
+        assertArrayEquals(new int[]{27, '[', 'H', 27, '[', '2', 'J'}, out.get(1));
+        assertArrayEquals(new byte[]{27, '[', 'H', 27, '[', '2', 'J'}, device.getStringCapabilityAsBytes(Capability.clear_screen));
+
+        assertArrayEquals(new int[]{7}, device.getStringCapabilityAsInts(Capability.bell));
+        assertArrayEquals(new int[]{13, 10, '3', 27, 1, 27, 2, '\\'},
+                device.getStringCapabilityAsInts(Capability.carriage_return));
+        assertNull(device.getStringCapabilityAsInts(Capability.cursor_home));
+
+        //compiled again when the capability change
+        device.addCapability(Capability.bell, "\\a");
+        assertArrayEquals(new int[]{7}, device.getStringCapabilityAsInts(Capability.bell));
+        device.addCapability(Capability.bell, "\\E");
+        assertArrayEquals(new int[]{27}, device.getStringCapabilityAsInts(Capability.bell));
+    }
 }
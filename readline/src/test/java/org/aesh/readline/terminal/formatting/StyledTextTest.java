@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.terminal.formatting;
+
+import org.aesh.readline.util.Parser;
+import org.aesh.terminal.utils.ANSI;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StyledTextTest {
+
+    @Test
+    public void testSequenceOnlyOnStyleChange() {
+        TerminalStyle red = TerminalStyle.of(null, new TerminalColor(Color.RED, Color.DEFAULT));
+        TerminalStyle bold = TerminalStyle.of(new TerminalTextStyle(CharacterType.BOLD),
+                new TerminalColor(Color.RED, Color.DEFAULT));
+
+        StyledText text = new StyledText(2);
+        text.append("foo", red).append("bar", red).append("baz", bold).append(" ok", TerminalStyle.DEFAULT);
+
+        String expected = ANSI.START + ";31;49mfoobar" + ANSI.START + "1mbaz" + ANSI.START + "22;39m ok";
+        assertEquals(expected, text.toString());
+        assertArrayEquals(Parser.toCodePoints(expected), text.render());
+        assertArrayEquals(Parser.toCodePoints("foobarbaz ok"), text.getCodePoints());
+        assertEquals(12, text.size());
+        assertSame(bold, text.styleAt(6));
+    }
+
+    @Test
+    public void testSameOutputAsTerminalCharacters() {
+        TerminalColor blue = new TerminalColor(Color.DEFAULT, Color.BLUE);
+        List<TerminalCharacter> chars = Arrays.asList(
+                new TerminalCharacter('a', new TerminalTextStyle(CharacterType.BOLD)),
+                new TerminalCharacter('b', new TerminalTextStyle(CharacterType.BOLD)),
+                new TerminalCharacter('c', blue, CharacterType.CROSSED_OUT),
+                new TerminalCharacter('d', blue, CharacterType.INVERT),
+                new TerminalCharacter('e'),
+                new TerminalCharacter('\ud83d'),
+                new TerminalCharacter('\ude00'));
+
+        StringBuilder expected = new StringBuilder();
+        StyledText text = new StyledText();
+        TerminalCharacter prev = null;
+        for(TerminalCharacter c : chars) {
+            expected.append(prev == null ? c.toString() : c.toString(prev));
+            prev = c;
+            text.append(c);
+        }
+        assertArrayEquals(Parser.toCodePoints(expected.toString()), text.render());
+        assertEquals(6, text.size());
+        assertEquals(0x1f600, text.codePointAt(5));
+    }
+
+    @Test
+    public void testTerminalString() {
+        StyledText text = new StyledText();
+        text.append(new TerminalString("foo", new TerminalColor(Color.GREEN, Color.DEFAULT)))
+                .append(new TerminalString(" bar", true));
+        assertEquals(ANSI.START + ";32;49mfoo" + ANSI.START + "39m bar", text.toString());
+
+        text.clear();
+        assertEquals(0, text.render().length);
+    }
+}
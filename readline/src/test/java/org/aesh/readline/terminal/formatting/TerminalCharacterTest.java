@@ -23,6 +23,8 @@ import org.aesh.terminal.utils.ANSI;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -93,5 +95,17 @@ public class TerminalCharacterTest {
 
     }
 
-
+    @Test
+    public void testInternedStyle() {
+        TerminalCharacter c1 = new TerminalCharacter('a', new TerminalColor(Color.RED, Color.BLUE),
+                new TerminalTextStyle(CharacterType.BOLD));
+        TerminalCharacter c2 = new TerminalCharacter('b', new TerminalColor(Color.RED, Color.BLUE),
+                new TerminalTextStyle(CharacterType.BOLD));
+        assertSame(c1.getTerminalStyle(), c2.getTerminalStyle());
+        assertSame(TerminalStyle.DEFAULT, new TerminalCharacter('c').getTerminalStyle());
+
+        c2.getStyle().setUnderline(true);
+        assertFalse(c1.equalsIgnoreCharacter(c2));
+        assertEquals(ANSI.START + "1;4;31;44mb", c2.toString());
+    }
 }
@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.readline.terminal.impl;
+
+import org.aesh.readline.Prompt;
+import org.aesh.readline.Readline;
+import org.aesh.readline.ReadlineFlag;
+import org.aesh.readline.tty.terminal.TerminalConnection;
+import org.aesh.readline.util.Parser;
+import org.aesh.terminal.Attributes;
+import org.aesh.terminal.tty.Signal;
+import org.aesh.terminal.tty.Size;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractPosixTerminalTest {
+
+    @Test
+    public void testCachedAttributes() throws IOException {
+        CountingPty pty = new CountingPty();
+        TestTerminal terminal = new TestTerminal(pty, true);
+        assertEquals(1, pty.getAttr);
+
+        Attributes attributes = terminal.getAttributes();
+        attributes.setLocalFlag(Attributes.LocalFlag.ECHO, false);
+        assertTrue(terminal.getAttributes().getLocalFlag(Attributes.LocalFlag.ECHO));
+        assertEquals(1, pty.getAttr);
+
+        terminal.setAttributes(attributes);
+        assertEquals(1, pty.setAttr);
+        assertFalse(terminal.getAttributes().getLocalFlag(Attributes.LocalFlag.ECHO));
+        // nothing changed
+        terminal.setAttributes(terminal.getAttributes());
+        assertEquals(1, pty.setAttr);
+        assertEquals(1, pty.getAttr);
+
+        terminal.raise(Signal.CONT);
+        terminal.getAttributes();
+        assertEquals(2, pty.getAttr);
+
+        // without signals the attributes are always read
+        terminal = new TestTerminal(pty, false);
+        terminal.getAttributes();
+        terminal.getAttributes();
+        assertEquals(5, pty.getAttr);
+    }
+
+    @Test
+    public void testKeepRawModeBetweenPrompts() throws IOException {
+        CountingPty pty = new CountingPty();
+        TerminalConnection connection = new TerminalConnection(new TestTerminal(pty, true));
+        Readline readline = new Readline();
+        EnumMap<ReadlineFlag, Integer> keepRawMode = new EnumMap<>(ReadlineFlag.class);
+        keepRawMode.put(ReadlineFlag.KEEP_RAW_MODE, 0);
+        List<String> lines = new ArrayList<>();
+
+        for(int i = 0; i < 3; i++) {
+            readline.readline(connection, new Prompt(""), lines::add, null, null, null, null, keepRawMode);
+            connection.getStdinHandler().accept(Parser.toCodePoints("line" + i + "\r"));
+        }
+        assertEquals(Arrays.asList("line0", "line1", "line2"), lines);
+        // only the first prompt entered raw mode
+        assertEquals(1, pty.setAttr);
+        assertFalse(pty.attributes.getLocalFlag(Attributes.LocalFlag.ICANON));
+
+        readline.readline(connection, new Prompt(""), lines::add);
+        connection.getStdinHandler().accept(Parser.toCodePoints("last\r"));
+        assertEquals("last", lines.get(3));
+        assertEquals(2, pty.setAttr);
+        assertTrue(pty.attributes.getLocalFlag(Attributes.LocalFlag.ICANON));
+        assertEquals(1, pty.getAttr);
+    }
+
+    @Test
+    public void testRawModeRoundTrip() throws IOException {
+        CountingPty pty = new CountingPty();
+        TestTerminal terminal = new TestTerminal(pty, true);
+        Attributes cooked = terminal.getAttributes();
+        Attributes raw = new Attributes(cooked);
+        raw.setLocalFlag(Attributes.LocalFlag.ICANON, false);
+
+        for(int i = 0; i < 3; i++) {
+            terminal.setAttributes(raw);
+            terminal.setAttributes(cooked);
+        }
+        assertEquals(6, pty.setAttr);
+        assertEquals(1, pty.getAttr);
+    }
+
+    @Test
+    public void testCachedSize() throws IOException {
+        CountingPty pty = new CountingPty();
+        TestTerminal terminal = new TestTerminal(pty, true);
+        assertEquals(new Size(80, 24), terminal.getSize());
+        assertEquals(new Size(80, 24), terminal.getSize());
+        assertEquals(1, pty.getSize);
+
+        pty.size = new Size(100, 40);
+        terminal.raise(Signal.WINCH);
+        assertEquals(new Size(100, 40), terminal.getSize());
+        assertEquals(2, pty.getSize);
+
+        // without signals the size is always read
+        terminal = new TestTerminal(pty, false);
+        terminal.getSize();
+        terminal.getSize();
+        assertEquals(4, pty.getSize);
+    }
+
+    private static class TestTerminal extends AbstractPosixTerminal {
+
+        TestTerminal(Pty pty, boolean cacheSize) throws IOException {
+            super("test", "ansi", pty, cacheSize);
+        }
+
+        @Override
+        public InputStream input() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream output() {
+            return new ByteArrayOutputStream();
+        }
+    }
+
+    private static class CountingPty implements Pty {
+        private Attributes attributes = new Attributes();
+        private Size size = new Size(80, 24);
+        private int getAttr;
+        private int setAttr;
+        private int getSize;
+
+        CountingPty() {
+            attributes.setLocalFlag(Attributes.LocalFlag.ECHO, true);
+            attributes.setLocalFlag(Attributes.LocalFlag.ICANON, true);
+        }
+
+        @Override
+        public InputStream getMasterInput() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OutputStream getMasterOutput() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getSlaveInput() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OutputStream getSlaveOutput() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Attributes getAttr() {
+            getAttr++;
+            return new Attributes(attributes);
+        }
+
+        @Override
+        public void setAttr(Attributes attr) {
+            setAttr++;
+            attributes = new Attributes(attr);
+        }
+
+        @Override
+        public Size getSize() {
+            getSize++;
+            return size;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
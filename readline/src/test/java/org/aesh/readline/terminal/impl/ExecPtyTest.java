@@ -31,6 +31,8 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import org.aesh.terminal.tty.Size;
 
@@ -148,6 +150,38 @@ public class ExecPtyTest {
         assertEquals(new Size(244, 85), ExecPty.doGetSize(hpuxSttySample));
     }
 
+    @Test
+    public void testSttyArguments() throws IOException {
+        Attributes current = ExecPty.doGetAttr(linuxSttySample);
+        Attributes attributes = new Attributes(current);
+        assertEquals(Collections.emptyList(), ExecPty.sttyArguments(attributes, current));
+
+        attributes.setLocalFlags(EnumSet.of(LocalFlag.ICANON, LocalFlag.ECHO), false);
+        attributes.setControlChar(ControlChar.VMIN, 0);
+        assertEquals(Arrays.asList("-echo", "-icanon", "min", "0"), ExecPty.sttyArguments(attributes, current));
+        assertEquals(Arrays.asList("echo", "icanon", "min", "1"), ExecPty.sttyArguments(current, attributes));
+    }
+
+    @Test
+    public void testSetAttrOnlyDiffAgainstFreshAttributes() throws IOException {
+        int[] reads = new int[1];
+        ExecPty pty = new ExecPty("test") {
+            @Override
+            protected String doGetConfig() {
+                reads[0]++;
+                return linuxSttySample;
+            }
+        };
+        Attributes attributes = pty.getAttr();
+        assertEquals(1, reads[0]);
+        // nothing changed compared to what was just read, stty is not started
+        pty.setAttr(attributes);
+        assertEquals(1, reads[0]);
+        // what we wrote might have been changed by another process, read the tty again
+        pty.setAttr(attributes);
+        assertEquals(2, reads[0]);
+    }
+
     @Test
     public void testParseAttributesLinux() throws IOException {
         Attributes attributes = ExecPty.doGetAttr(linuxSttySample);
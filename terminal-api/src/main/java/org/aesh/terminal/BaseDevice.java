@@ -21,113 +21,191 @@ package org.aesh.terminal;
 
 import org.aesh.terminal.tty.Capability;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
+ * The string capabilities are compiled to code points the first time they are used,
+ * and cached pr capability. A cached sequence is compiled again if the capability string change.
+ *
  * @author <a href="mailto:stale.pedersen@jboss.org">Ståle W. Pedersen</a>
  */
 public abstract class BaseDevice implements Device {
 
-    private static final Pattern A = Pattern.compile("^\\\\([0-9]{1,3})");
-    private static final Pattern B = Pattern.compile("^\\\\x([0-9,A-F,a-f]{1,2})");
+    private final AtomicReferenceArray<CompiledCapability> compiled =
+            new AtomicReferenceArray<>(Capability.values().length);
 
     @Override
     public int[] getStringCapabilityAsInts(Capability capability) {
-        String str = getStringCapability(capability);
-        if(str != null)
-            return parseKeySeq(str);
+        CompiledCapability compiledCapability = compiled(capability);
+        if(compiledCapability != null)
+            return compiledCapability.codePoints.clone();
         else
             return null;
     }
 
+    /**
+     * @return the capability sequence as bytes, or null if the device do not have the capability.
+     *         The array is shared and must not be modified.
+     */
+    public byte[] getStringCapabilityAsBytes(Capability capability) {
+        CompiledCapability compiledCapability = compiled(capability);
+        return compiledCapability != null ? compiledCapability.bytes() : null;
+    }
+
+    /**
+     * The parsed sequence is cached, the output get a copy of it.
+     */
     @Override public boolean puts(Consumer<int[]> output, Capability capability) {
-        String str = getStringCapability(capability);
-        if (str == null) {
+        CompiledCapability compiledCapability = compiled(capability);
+        if (compiledCapability == null) {
             return false;
         }
-        output.accept(parseKeySeq(str));
+        output.accept(compiledCapability.codePoints.clone());
         return true;
     }
 
+    private CompiledCapability compiled(Capability capability) {
+        String str = getStringCapability(capability);
+        if(str == null)
+            return null;
+        CompiledCapability compiledCapability = compiled.get(capability.ordinal());
+        if(compiledCapability == null || !compiledCapability.source.equals(str)) {
+            compiledCapability = new CompiledCapability(str, parseKeySeq(str));
+            compiled.set(capability.ordinal(), compiledCapability);
+        }
+        return compiledCapability;
+    }
+
   private static int[] parseKeySeq(String keyseq) {
-    ArrayList<Integer> builder = new ArrayList<>();
-    while (keyseq.length() > 0) {
-      if (keyseq.startsWith("\\C-") && keyseq.length() > 3) {
-        int c = (Character.toUpperCase(keyseq.charAt(3)) - '@') & 0x7F;
-        builder.add(c);
-        keyseq = keyseq.substring(4);
-      } else if (keyseq.startsWith("\\M-") && keyseq.length() > 3) {
-        int c = (Character.toUpperCase(keyseq.charAt(3)) - '@') & 0x7F;
-        builder.add(27);
-        builder.add(c);
-        keyseq = keyseq.substring(4);
+    int[] builder = new int[keyseq.length()];
+    int size = 0;
+    int length = keyseq.length();
+    int i = 0;
+    while (i < length) {
+      char c = keyseq.charAt(i);
+      char next = i + 1 < length ? keyseq.charAt(i + 1) : 0;
+      if (c == '\\' && (next == 'C' || next == 'M') && i + 3 < length && keyseq.charAt(i + 2) == '-') {
+        if (next == 'M')
+          builder = add(builder, size++, 27);
+        builder = add(builder, size++, control(keyseq.charAt(i + 3)));
+        i += 4;
       }
-      else if(keyseq.startsWith("^") && keyseq.length() > 1) {
-          int c = (Character.toUpperCase(keyseq.charAt(1)) - '@') & 0x7F;
-          builder.add(c);
-          keyseq = keyseq.substring(2);
+      else if (c == '^' && i + 1 < length) {
+        builder = add(builder, size++, control(next));
+        i += 2;
       }
-      else if (keyseq.startsWith("\\e") || keyseq.startsWith("\\E")) {
-        builder.add(27);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\\\")) {
-        builder.add((int)'\\');
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\\"")) {
-        builder.add((int)'"');
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\'")) {
-        builder.add((int)'\'');
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\a")) {
-        builder.add(7);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\b")) {
-        builder.add(8);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\d")) {
-        builder.add(127);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\f")) {
-        builder.add(12);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\n")) {
-        builder.add(10);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\r")) {
-        builder.add(13);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\t")) {
-        builder.add(9);
-        keyseq = keyseq.substring(2);
-      } else if (keyseq.startsWith("\\v")) {
-        builder.add(11);
-        keyseq = keyseq.substring(2);
-      } else {
-        Matcher matcher = A.matcher(keyseq);
-        if (matcher.find()) {
-          builder.add(Integer.parseInt(matcher.group(1), 8));
-          keyseq = keyseq.substring(matcher.end());
-        } else {
-          matcher = B.matcher(keyseq);
-          if (matcher.find()) {
-            builder.add(Integer.parseInt(matcher.group(1), 16));
-            keyseq = keyseq.substring(matcher.end());
-          } else {
-            builder.add((int) keyseq.charAt(0));
-            keyseq = keyseq.substring(1);
-          }
+      else if (c == '\\' && i + 1 < length) {
+        int escaped = escaped(next);
+        if (escaped >= 0) {
+          builder = add(builder, size++, escaped);
+          i += 2;
+        }
+        else if (isOctal(next)) {
+          // \ddd, up to three octal digits
+          int end = i + 1;
+          int value = 0;
+          while (end < length && end < i + 4 && isOctal(keyseq.charAt(end)))
+            value = value * 8 + (keyseq.charAt(end++) - '0');
+          builder = add(builder, size++, value);
+          i = end;
+        }
+        else if (next == 'x' && i + 2 < length && Character.digit(keyseq.charAt(i + 2), 16) >= 0) {
+          // \xhh, up to two hex digits
+          int end = i + 2;
+          int value = 0;
+          while (end < length && end < i + 4 && Character.digit(keyseq.charAt(end), 16) >= 0)
+            value = value * 16 + Character.digit(keyseq.charAt(end++), 16);
+          builder = add(builder, size++, value);
+          i = end;
         }
+        else {
+          builder = add(builder, size++, c);
+          i++;
+        }
+      }
+      else {
+        builder = add(builder, size++, c);
+        i++;
       }
     }
-    int[] f = new int[builder.size()];
-    for (int i = 0;i < builder.size();i++) {
-      f[i] = builder.get(i);
+    return size == builder.length ? builder : Arrays.copyOf(builder, size);
+  }
+
+  private static int[] add(int[] builder, int index, int value) {
+    if (index == builder.length)
+      builder = Arrays.copyOf(builder, Math.max(4, builder.length * 2));
+    builder[index] = value;
+    return builder;
+  }
+
+  private static int control(char c) {
+    return (Character.toUpperCase(c) - '@') & 0x7F;
+  }
+
+  private static boolean isOctal(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+  /**
+   * @return the value of the escaped character, or -1 if it is not a single character escape
+   */
+  private static int escaped(char c) {
+    switch (c) {
+      case 'e':
+      case 'E':
+        return 27;
+      case '\\':
+        return '\\';
+      case '"':
+        return '"';
+      case '\'':
+        return '\'';
+      case 'a':
+        return 7;
+      case 'b':
+        return 8;
+      case 'd':
+        return 127;
+      case 'f':
+        return 12;
+      case 'n':
+        return 10;
+      case 'r':
+        return 13;
+      case 't':
+        return 9;
+      case 'v':
+        return 11;
+      default:
+        return -1;
+    }
+  }
+
+  private static final class CompiledCapability {
+    private final String source;
+    private final int[] codePoints;
+    private volatile byte[] bytes;
+
+    private CompiledCapability(String source, int[] codePoints) {
+      this.source = source;
+      this.codePoints = codePoints;
+    }
+
+    /**
+     * The sequences only contain 8 bit values
+     */
+    private byte[] bytes() {
+      byte[] result = bytes;
+      if (result == null) {
+        result = new byte[codePoints.length];
+        for (int i = 0; i < codePoints.length; i++)
+          result[i] = (byte) codePoints[i];
+        bytes = result;
+      }
+      return result;
     }
-    return f;
   }
 
 }
@@ -23,7 +23,12 @@ import org.aesh.terminal.tty.Point;
 import org.aesh.terminal.tty.Size;
 import org.aesh.terminal.tty.Capability;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.EnumSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.Consumer;
@@ -143,11 +148,57 @@ public interface Connection extends AutoCloseable {
      * @return this connection
      */
     default Connection write(String s) {
-        int[] codePoints = s.codePoints().toArray();
-        stdoutHandler().accept(codePoints);
+        return write((CharSequence) s);
+    }
+
+    /**
+     * Write the text to the output handler in bounded chunks, so no code point array
+     * of the whole text is created.
+     * Connections that encode to a byte sink write the text straight to it.
+     *
+     * @param s text
+     * @return this connection
+     */
+    default Connection write(CharSequence s) {
+        int length = s.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + 1024);
+            // do not split surrogate pairs
+            if (end < length && Character.isHighSurrogate(s.charAt(end - 1)))
+                end++;
+            stdoutHandler().accept(s.subSequence(start, end).codePoints().toArray());
+            start = end;
+        }
         return this;
     }
 
+    /**
+     * Write data that is already encoded with {@link #outputEncoding()}.
+     * Connections that encode to a byte sink pass the bytes straight on, otherwise
+     * they are decoded in bounded chunks and given to the output handler.
+     *
+     * @param bytes encoded data, the buffer is consumed
+     * @return this connection
+     */
+    default Connection writeBytes(ByteBuffer bytes) {
+        Charset charset = outputEncoding() != null ? outputEncoding() : Charset.defaultCharset();
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(1024);
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, true);
+            chars.flip();
+            write(chars);
+            chars.clear();
+        } while (result.isOverflow());
+        decoder.flush(chars);
+        chars.flip();
+        return write(chars);
+    }
+
     default Attributes enterRawMode() {
         Attributes prvAttr = getAttributes();
         Attributes newAttr = new Attributes(prvAttr);
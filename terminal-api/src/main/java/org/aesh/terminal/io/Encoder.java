@@ -22,34 +22,359 @@ package org.aesh.terminal.io;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
+ * Encode code points to bytes.
+ *
+ * UTF-8, US-ASCII and ISO-8859-1 are encoded directly from the code points, other charsets
+ * use a cached CharsetEncoder. Characters that can not be encoded are replaced with '?'.
+ * With a {@link Consumer} sink each write is handed a new array of the exact size, with a
+ * {@link ByteRangeConsumer} sink a reusable buffer is handed over instead and nothing is
+ * allocated once the buffer is large enough.
+ * Text and pre-encoded bytes can also be streamed with {@link #write(CharSequence, boolean)} and
+ * {@link #writeBytes(ByteBuffer, boolean)}, they are passed on in chunks of at most
+ * {@link #CHUNK_SIZE} bytes.
+ *
  * @author <a href="mailto:stale.pedersen@jboss.org">Ståle W. Pedersen</a>
  */
 public class Encoder implements Consumer<int[]> {
 
-    private Charset charset;
+    private static final byte REPLACEMENT = '?';
+    // bytes passed on to the sink at once when streaming
+    public static final int CHUNK_SIZE = 8192;
+
+    private volatile Charset charset;
     private final Consumer<byte[]> out;
+    private final ByteRangeConsumer rangeOut;
+    // only used by the generic path and by the range sink, guarded by this
+    private CharsetEncoder encoder;
+    private CharBuffer chars;
+    private byte[] buffer;
 
     public Encoder(Charset charset, Consumer<byte[]> out) {
+        this(charset, out, null);
+    }
+
+    /**
+     * @param charset charset, if null the default charset is used
+     * @param out the sink is given a reused buffer, it must not keep it after the call
+     */
+    public Encoder(Charset charset, ByteRangeConsumer out) {
+        this(charset, null, out);
+    }
+
+    private Encoder(Charset charset, Consumer<byte[]> out, ByteRangeConsumer rangeOut) {
         if(charset != null)
             this.charset = charset;
         else
             this.charset = Charset.defaultCharset();
         this.out = out;
+        this.rangeOut = rangeOut;
     }
 
-    public void setCharset(Charset charset) {
-        if(charset != null)
+    public synchronized void setCharset(Charset charset) {
+        if(charset != null && !charset.equals(this.charset)) {
             this.charset = charset;
+            encoder = null;
+        }
     }
 
     @Override
     public void accept(int[] input) {
-        ByteBuffer bytesBuf = charset.encode(toCharBuffer(input));
-        out.accept(safeTrim(bytesBuf.array(), bytesBuf.limit()));
+        Charset charset = this.charset;
+        if(rangeOut == null && isDirect(charset)) {
+            byte[] bytes = new byte[encodedLength(charset, input)];
+            encodeDirect(charset, input, bytes);
+            out.accept(bytes);
+        }
+        else
+            encodeBuffered(input);
+    }
+
+    private synchronized void encodeBuffered(int[] input) {
+        int length;
+        if(isDirect(charset)) {
+            length = encodedLength(charset, input);
+            ensureBuffer(length);
+            encodeDirect(charset, input, buffer);
+        }
+        else
+            length = encodeWithEncoder(input);
+
+        if(rangeOut != null)
+            rangeOut.accept(buffer, 0, length);
+        else
+            out.accept(Arrays.copyOf(buffer, length));
+    }
+
+    /**
+     * Encode the characters straight to the sink, they are not converted to code points first.
+     *
+     * @param text text to encode
+     * @param translateNewLines if true \n is written as \r\n, as done by {@link org.aesh.terminal.tty.TtyOutputMode}
+     */
+    public synchronized void write(CharSequence text, boolean translateNewLines) {
+        ensureBuffer(CHUNK_SIZE + 8);
+        if(isDirect(charset))
+            writeDirect(text, translateNewLines);
+        else
+            writeWithEncoder(text, translateNewLines);
+    }
+
+    /**
+     * Pass already encoded bytes on to the sink.
+     *
+     * @param bytes the bytes, the buffer is consumed
+     * @param translateNewLines if true \n is written as \r\n
+     */
+    public synchronized void writeBytes(ByteBuffer bytes, boolean translateNewLines) {
+        ensureBuffer(CHUNK_SIZE + 8);
+        int pos = 0;
+        while(bytes.hasRemaining()) {
+            if(translateNewLines) {
+                byte b = bytes.get();
+                if(b == '\n')
+                    buffer[pos++] = '\r';
+                buffer[pos++] = b;
+            }
+            else {
+                int length = Math.min(bytes.remaining(), CHUNK_SIZE - pos);
+                bytes.get(buffer, pos, length);
+                pos += length;
+            }
+            if(pos >= CHUNK_SIZE) {
+                emit(pos);
+                pos = 0;
+            }
+        }
+        if(pos > 0)
+            emit(pos);
+    }
+
+    private void writeDirect(CharSequence text, boolean translateNewLines) {
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+        int limit = charset.equals(StandardCharsets.US_ASCII) ? 0x80 : 0x100;
+        int length = text.length();
+        int pos = 0;
+        for(int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if(c < 0x80) {
+                if(c == '\n' && translateNewLines)
+                    buffer[pos++] = '\r';
+                buffer[pos++] = (byte) c;
+            }
+            else if(!utf8) {
+                // a surrogate pair is one unmappable character
+                if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1)))
+                    i++;
+                buffer[pos++] = c < limit ? (byte) c : REPLACEMENT;
+            }
+            else if(c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(!Character.isSurrogate(c)) {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else
+                buffer[pos++] = REPLACEMENT;
+            if(pos >= CHUNK_SIZE) {
+                emit(pos);
+                pos = 0;
+            }
+        }
+        if(pos > 0)
+            emit(pos);
+    }
+
+    private void writeWithEncoder(CharSequence text, boolean translateNewLines) {
+        if(encoder == null)
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        encoder.reset();
+        // the slice keep the chunks within CHUNK_SIZE
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, CHUNK_SIZE).slice();
+        int length = text.length();
+        int start = 0;
+        while(start < length) {
+            int end = translateNewLines ? indexOf(text, '\n', start) : length;
+            encode(CharBuffer.wrap(text, start, end), bytes, false);
+            if(end < length)
+                encode(CharBuffer.wrap("\r\n"), bytes, false);
+            start = end + 1;
+        }
+        encode(CharBuffer.allocate(0), bytes, true);
+        CoderResult result = encoder.flush(bytes);
+        while(result.isOverflow()) {
+            emit(bytes.position());
+            bytes.clear();
+            result = encoder.flush(bytes);
+        }
+        if(bytes.position() > 0)
+            emit(bytes.position());
+    }
+
+    private void encode(CharBuffer chars, ByteBuffer bytes, boolean endOfInput) {
+        CoderResult result = encoder.encode(chars, bytes, endOfInput);
+        while(result.isOverflow()) {
+            emit(bytes.position());
+            bytes.clear();
+            result = encoder.encode(chars, bytes, endOfInput);
+        }
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        int length = text.length();
+        for(int i = from; i < length; i++)
+            if(text.charAt(i) == c)
+                return i;
+        return length;
+    }
+
+    private void emit(int length) {
+        if(rangeOut != null)
+            rangeOut.accept(buffer, 0, length);
+        else
+            out.accept(Arrays.copyOf(buffer, length));
+    }
+
+    private static boolean isDirect(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) ||
+                charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static int encodedLength(Charset charset, int[] input) {
+        if(!charset.equals(StandardCharsets.UTF_8))
+            return input.length;
+        int length = 0;
+        for(int c : input) {
+            if(c < 0x80)
+                length++;
+            else if(c < 0x800)
+                length += 2;
+            else if(c < 0x10000)
+                length += Character.isSurrogate((char) c) ? 1 : 3;
+            else if(c <= Character.MAX_CODE_POINT)
+                length += 4;
+            else
+                length++;
+        }
+        return length;
+    }
+
+    private static void encodeDirect(Charset charset, int[] input, byte[] bytes) {
+        if(charset.equals(StandardCharsets.UTF_8)) {
+            encodeUtf8(input, bytes);
+            return;
+        }
+        int limit = charset.equals(StandardCharsets.US_ASCII) ? 0x80 : 0x100;
+        for(int i = 0; i < input.length; i++) {
+            int c = input[i];
+            bytes[i] = c >= 0 && c < limit ? (byte) c : REPLACEMENT;
+        }
+    }
+
+    private static void encodeUtf8(int[] input, byte[] bytes) {
+        int pos = 0;
+        for(int c : input) {
+            if(c < 0x80 && c >= 0)
+                bytes[pos++] = (byte) c;
+            else if(c < 0x800 && c >= 0) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(c < 0x10000 && c >= 0) {
+                if(Character.isSurrogate((char) c))
+                    bytes[pos++] = REPLACEMENT;
+                else {
+                    bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                    bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            else if(c >= 0 && c <= Character.MAX_CODE_POINT) {
+                bytes[pos++] = (byte) (0xF0 | (c >> 18));
+                bytes[pos++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else
+                bytes[pos++] = REPLACEMENT;
+        }
+    }
+
+    /**
+     * Encode with the cached encoder into the buffer
+     *
+     * @return number of bytes
+     */
+    private int encodeWithEncoder(int[] input) {
+        if(encoder == null)
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int capacity = 0;
+        for(int c : input)
+            capacity += Character.isValidCodePoint(c) ? Character.charCount(c) : 1;
+        if(chars == null || chars.capacity() < capacity)
+            chars = CharBuffer.allocate(Math.max(capacity, 64));
+        chars.clear();
+        for(int c : input) {
+            if(Character.isBmpCodePoint(c))
+                chars.put((char) c);
+            else if(Character.isValidCodePoint(c)) {
+                chars.put(Character.highSurrogate(c));
+                chars.put(Character.lowSurrogate(c));
+            }
+            else
+                chars.put((char) REPLACEMENT);
+        }
+        chars.flip();
+
+        ensureBuffer((int) (capacity * encoder.maxBytesPerChar()));
+        encoder.reset();
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        //overflow should not happen with maxBytesPerChar, but grow and continue just in case
+        CoderResult result = encoder.encode(chars, bytes, true);
+        while(result.isOverflow()) {
+            bytes = grow(bytes);
+            result = encoder.encode(chars, bytes, true);
+        }
+        result = encoder.flush(bytes);
+        while(result.isOverflow()) {
+            bytes = grow(bytes);
+            result = encoder.flush(bytes);
+        }
+        return bytes.position();
+    }
+
+    private ByteBuffer grow(ByteBuffer bytes) {
+        int position = bytes.position();
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        ByteBuffer grown = ByteBuffer.wrap(buffer);
+        grown.position(position);
+        return grown;
+    }
+
+    private void ensureBuffer(int length) {
+        if(buffer == null || buffer.length < length)
+            buffer = new byte[Math.max(length, buffer == null ? 256 : buffer.length * 2)];
     }
 
     public static CharBuffer toCharBuffer(int[] input) {
@@ -66,11 +391,4 @@ public class Encoder implements Consumer<int[]> {
         charBuf.flip();
         return charBuf;
     }
-
-    private static byte[] safeTrim(byte[] bytes, int length) {
-        if(bytes.length == length)
-            return bytes;
-        else
-            return Arrays.copyOf(bytes, length);
-    }
 }
@@ -19,48 +19,73 @@
  */
 package org.aesh.terminal.tty;
 
+import org.aesh.terminal.Attributes;
+
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
+ * Output post processing, translate \n to \r\n when both {@link Attributes.OutputFlag#OPOST} and
+ * {@link Attributes.OutputFlag#ONLCR} are set, equivalent to 'stty opost onlcr'.
+ * The translated output is passed on with one call for each call to {@link #accept(int[])}.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class TtyOutputMode implements Consumer<int[]> {
 
   private final Consumer<int[]> readHandler;
+  private final Supplier<Attributes> attributes;
 
+  /**
+   * Always translate \n to \r\n
+   */
   public TtyOutputMode(Consumer<int[]> readHandler) {
+    this(readHandler, null);
+  }
+
+  /**
+   * @param attributes current attributes of the connection, \n is translated if they are null
+   */
+  public TtyOutputMode(Consumer<int[]> readHandler, Supplier<Attributes> attributes) {
     this.readHandler = readHandler;
+    this.attributes = attributes;
   }
 
   @Override
   public void accept(int[] data) {
     if (readHandler != null && data.length > 0) {
-      int prev = 0;
-      int ptr = 0;
-      while (ptr < data.length) {
-        // Simple implementation that works only on system that uses /n as line terminator
-        // equivalent to 'stty onlcr'
-        int cp = data[ptr];
-        if (cp == '\n') {
-          if (ptr > prev) {
-            sendChunk(data, prev, ptr);
-          }
-          readHandler.accept(new int[]{'\r','\n'});
-          prev = ++ptr;
-        } else {
-          ptr++;
-        }
+      int newLines = translatesNewLines() ? count(data, '\n') : 0;
+      if (newLines == 0) {
+        readHandler.accept(data);
+        return;
       }
-      if (ptr > prev) {
-        sendChunk(data, prev, ptr);
+      int[] buf = new int[data.length + newLines];
+      int pos = 0;
+      for (int cp : data) {
+        if (cp == '\n')
+          buf[pos++] = '\r';
+        buf[pos++] = cp;
       }
+      readHandler.accept(buf);
     }
   }
 
-  private void sendChunk(int[] data, int prev, int ptr) {
-    int len = ptr - prev;
-    int[] buf = new int[len];
-    System.arraycopy(data, prev, buf, 0, len);
-    readHandler.accept(buf);
+  /**
+   * @return true if \n is currently translated to \r\n
+   */
+  public boolean translatesNewLines() {
+    if (attributes == null)
+      return true;
+    Attributes attr = attributes.get();
+    return attr == null || (attr.getOutputFlag(Attributes.OutputFlag.OPOST) &&
+        attr.getOutputFlag(Attributes.OutputFlag.ONLCR));
+  }
+
+  private static int count(int[] data, int cp) {
+    int count = 0;
+    for (int c : data)
+      if (c == cp)
+        count++;
+    return count;
   }
 }
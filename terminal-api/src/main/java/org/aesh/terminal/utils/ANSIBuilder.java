@@ -19,20 +19,53 @@
  */
 package org.aesh.terminal.utils;
 
+import org.aesh.terminal.io.Encoder;
+
+import java.util.function.Consumer;
+
 /**
+ * Build text with ANSI colors and text types.
+ *
+ * Color and text type changes are not written when they are set, the SGR sequence for the
+ * resulting style is written once before the next text is appended. The sequences are
+ * precomputed, and nothing is written if the style did not change.
+ * The builder can be reused after {@link #clear()}, the result can be written straight to a
+ * code point or byte sink with {@link #writeTo(Consumer)} and {@link #writeTo(Encoder)}.
+ *
  * @author <a href="mailto:stalep@gmail.com">Ståle Pedersen</a>
  */
 public class ANSIBuilder {
 
     private static final String ANSI_START = "\u001B[";
     private static final String ANSI_RESET = "\u001B[0m";
+    private static final int COLORS = Color.values().length;
+    // the SGR parameters, without ANSI_START, for each combination of text type, text and bg color
+    private static final String[] SGR = new String[TextType.values().length * COLORS * COLORS];
+    private static final int DEFAULT_STYLE = style(TextType.DEFAULT, Color.DEFAULT, Color.DEFAULT);
+
+    static {
+        for(TextType type : TextType.values()) {
+            for(Color text : Color.values()) {
+                for(Color bg : Color.values()) {
+                    if(text == Color.DEFAULT && bg == Color.DEFAULT)
+                        SGR[style(type, text, bg)] = type.value() + "m";
+                    else
+                        SGR[style(type, text, bg)] = type.value() + ";" + text.text() + ";" + bg.bg() + "m";
+                }
+            }
+        }
+    }
+
     private final boolean ansi;
 
-    private StringBuilder b;
+    private final StringBuilder b;
     private TextType textType = TextType.DEFAULT;
     private Color bg = Color.DEFAULT;
     private Color text = Color.DEFAULT;
-    private boolean havePrintedColor = false;
+    // the style of the last SGR written to b
+    private int printed = DEFAULT_STYLE;
+    // resetColors have been called after the last SGR was written
+    private boolean resetPending = false;
 
     private ANSIBuilder(boolean enableAnsi) {
         ansi = enableAnsi;
@@ -47,38 +80,42 @@ public class ANSIBuilder {
         return new ANSIBuilder(enableAnsi);
     }
 
-    private void checkColor() {
-        if(ansi && !havePrintedColor) {
-            havePrintedColor = true;
-            doAppendColors();
-        }
+    private static int style(TextType type, Color text, Color bg) {
+        return (type.ordinal() * COLORS + text.ordinal()) * COLORS + bg.ordinal();
     }
 
-    private void doAppendColors() {
-        if(bg == Color.DEFAULT && text == Color.DEFAULT && textType == TextType.DEFAULT)
+    private void checkColor() {
+        if(!ansi)
             return;
-        else if (bg == Color.DEFAULT && text == Color.DEFAULT) {
-            b.append(ANSI_START)
-                    .append(textType.value()).append("m");
-        }
+        int style = style(textType, text, bg);
+        if(style == printed)
+            resetPending = false;
+        else if(style == DEFAULT_STYLE)
+            writeReset();
         else {
-            b.append(ANSI_START)
-                    .append(textType.value()).append(';')
-                    .append(text.text()).append(';')
-                    .append(bg.bg()).append('m');
+            b.append(ANSI_START);
+            // merge the pending reset into this SGR
+            if(resetPending && textType != TextType.DEFAULT)
+                b.append("0;");
+            b.append(SGR[style]);
+            printed = style;
+            resetPending = false;
         }
     }
 
+    private void writeReset() {
+        b.append(ANSI_RESET);
+        printed = DEFAULT_STYLE;
+        resetPending = false;
+    }
+
     public ANSIBuilder resetColors() {
         if(!ansi)
             return this;
-        if(textType == TextType.DEFAULT && bg == Color.DEFAULT && text == Color.DEFAULT)
-            return this;
-        else {
-            doResetColors();
-            b.append(ANSI_RESET);
-            return this;
-        }
+        doResetColors();
+        if(printed != DEFAULT_STYLE)
+            resetPending = true;
+        return this;
     }
 
     private void doResetColors() {
@@ -87,35 +124,32 @@ public class ANSIBuilder {
         text = Color.DEFAULT;
     }
 
+    /**
+     * Remove all text and reset the colors, the builder can then be reused.
+     */
     public ANSIBuilder clear() {
-        b = new StringBuilder();
-        if(ansi)
-            doResetColors();
-        havePrintedColor = false;
+        b.setLength(0);
+        doResetColors();
+        printed = DEFAULT_STYLE;
+        resetPending = false;
         return this;
     }
 
     public ANSIBuilder text(Color color) {
-        if(color != null && this.text != color) {
+        if(color != null)
             this.text = color;
-            havePrintedColor = false;
-        }
         return this;
     }
 
     public ANSIBuilder textType(TextType type) {
-        if(type != null && textType != type) {
+        if(type != null)
             textType = type;
-            havePrintedColor = false;
-        }
         return this;
     }
 
     public ANSIBuilder bg(Color color) {
-        if(color != null && this.bg != color) {
+        if(color != null)
             this.bg = color;
-            havePrintedColor = false;
-        }
         return this;
     }
 
@@ -388,6 +422,8 @@ public class ANSIBuilder {
     }
 
     public ANSIBuilder newline() {
+        if(resetPending)
+            writeReset();
         b.append(Config.getLineSeparator());
         return this;
     }
@@ -424,11 +460,46 @@ public class ANSIBuilder {
         return textType(TextType.CROSSED_OUT).append(text).textType(TextType.CROSSED_OUT_OFF);
     }
 
-    public String toString() {
+    private void finish() {
         resetColors();
+        if(resetPending)
+            writeReset();
+    }
+
+    public String toString() {
+        finish();
         return b.toString();
     }
 
+    /**
+     * Reset the colors and return the result as code points, without creating a String first.
+     */
+    public int[] toCodePoints() {
+        finish();
+        int[] codePoints = new int[b.codePointCount(0, b.length())];
+        for(int i = 0, pos = 0; pos < codePoints.length; pos++) {
+            int c = b.codePointAt(i);
+            codePoints[pos] = c;
+            i += Character.charCount(c);
+        }
+        return codePoints;
+    }
+
+    /**
+     * Reset the colors and give the result to a code point sink, eg a connection stdout handler.
+     */
+    public void writeTo(Consumer<int[]> out) {
+        out.accept(toCodePoints());
+    }
+
+    /**
+     * Reset the colors and encode the result straight into the encoder buffer.
+     */
+    public void writeTo(Encoder encoder) {
+        finish();
+        encoder.write(b, false);
+    }
+
     public enum Color {
         BLACK(0),
         RED(1),
@@ -21,22 +21,57 @@ package org.aesh.terminal.utils;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Curses helper methods.
  *
+ * A capability string is compiled once to a small stack machine program and cached,
+ * the program is evaluated with state that is local to each call, so it is safe to
+ * use from many threads.
+ *
  * @author <a href="mailto:gnodet@gmail.com">Guillaume Nodet</a>
  */
 public final class Curses {
 
-    private static Object[] sv = new Object[26];
-    private static Object[] dv = new Object[26];
+    // the cache is dropped if it grows beyond this, capability strings are normally few
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, Program> PROGRAMS = new ConcurrentHashMap<>();
 
-    private static final int IFTE_NONE = 0;
-    private static final int IFTE_IF = 1;
-    private static final int IFTE_THEN = 2;
-    private static final int IFTE_ELSE = 3;
+    private static final int TEXT = 0;
+    private static final int PUSH_PARAM = 1;
+    private static final int PUSH_PARAM_LENGTH = 2;
+    private static final int PUSH_CONSTANT = 3;
+    private static final int SET_DYNAMIC = 4;
+    private static final int GET_DYNAMIC = 5;
+    private static final int SET_STATIC = 6;
+    private static final int GET_STATIC = 7;
+    private static final int LENGTH = 8;
+    private static final int ADD = 9;
+    private static final int SUBTRACT = 10;
+    private static final int MULTIPLY = 11;
+    private static final int DIVIDE = 12;
+    private static final int MODULO = 13;
+    private static final int BIT_AND = 14;
+    private static final int BIT_OR = 15;
+    private static final int BIT_XOR = 16;
+    private static final int EQUAL = 17;
+    private static final int GREATER = 18;
+    private static final int LESS = 19;
+    private static final int AND = 20;
+    private static final int OR = 21;
+    private static final int NOT = 22;
+    private static final int BIT_NOT = 23;
+    private static final int INCREMENT_PARAMS = 24;
+    private static final int PRINT_DECIMAL = 25;
+    private static final int JUMP = 26;
+    private static final int JUMP_IF_FALSE = 27;
 
     private Curses() {
     }
@@ -50,63 +85,63 @@ public final class Curses {
      * @throws IOException if an error occurs
      */
     public static void tputs(Writer out, String str, Object... params) throws IOException {
+        program(str).execute(out, params);
+    }
+
+    private static Program program(String str) {
+        Program program = PROGRAMS.get(str);
+        if (program == null) {
+            program = compile(str);
+            if (PROGRAMS.size() >= MAX_CACHED)
+                PROGRAMS.clear();
+            PROGRAMS.put(str, program);
+        }
+        return program;
+    }
+
+    private static Program compile(String str) {
+        Compiler compiler = new Compiler();
         int index = 0;
         int length = str.length();
-        int ifte = IFTE_NONE;
-        boolean exec = true;
-        Stack<Object> stack = new Stack<Object>();
         while (index < length) {
             char ch = str.charAt(index++);
             switch (ch) {
                 case '\\':
                     ch = str.charAt(index++);
-                    if (ch >= '0' && ch <= '9') {
-                        throw new UnsupportedOperationException(); // todo
+                    if (ch >= '0' && ch <= '7') {
+                        int value = ch - '0';
+                        for (int i = 0; i < 2 && index < length && str.charAt(index) >= '0' && str.charAt(index) <= '7'; i++)
+                            value = value * 8 + (str.charAt(index++) - '0');
+                        // \0 is the null character, encoded as \200 in terminfo
+                        compiler.text(value == 0 ? 0200 : value);
                     } else {
                         switch (ch) {
                             case 'e':
                             case 'E':
-                                if (exec) {
-                                    out.write(27); // escape
-                                }
+                                compiler.text(27); // escape
                                 break;
                             case 'n':
-                                out.write('\n');
+                                compiler.text('\n');
                                 break;
-//                        case 'l':
-//                            rawPrint('\l');
-//                            break;
                             case 'r':
-                                if (exec) {
-                                    out.write('\r');
-                                }
+                                compiler.text('\r');
                                 break;
                             case 't':
-                                if (exec) {
-                                    out.write('\t');
-                                }
+                                compiler.text('\t');
                                 break;
                             case 'b':
-                                if (exec) {
-                                    out.write('\b');
-                                }
+                                compiler.text('\b');
                                 break;
                             case 'f':
-                                if (exec) {
-                                    out.write('\f');
-                                }
+                                compiler.text('\f');
                                 break;
                             case 's':
-                                if (exec) {
-                                    out.write(' ');
-                                }
+                                compiler.text(' ');
                                 break;
                             case ':':
                             case '^':
                             case '\\':
-                                if (exec) {
-                                    out.write(ch);
-                                }
+                                compiler.text(ch);
                                 break;
                             default:
                                 throw new IllegalArgumentException();
@@ -115,34 +150,32 @@ public final class Curses {
                     break;
                 case '^':
                     ch = str.charAt(index++);
-                    if (exec) {
-                        out.write(ch - '@');
-                    }
+                    compiler.text(ch - '@');
                     break;
                 case '%':
                     ch = str.charAt(index++);
                     switch (ch) {
                         case '%':
-                            if (exec) {
-                                out.write('%');
-                            }
+                            compiler.text('%');
                             break;
                         case 'p':
-                            ch = str.charAt(index++);
-                            if (exec) {
-                                stack.push(params[ch - '1']);
+                            int param = str.charAt(index++) - '1';
+                            if (param < 0 || param > 8)
+                                throw new IllegalArgumentException();
+                            // the length of a parameter is the length of its string value
+                            if (index + 1 < length && str.charAt(index) == '%' && str.charAt(index + 1) == 'l') {
+                                compiler.emit(PUSH_PARAM_LENGTH, param);
+                                index += 2;
                             }
+                            else
+                                compiler.emit(PUSH_PARAM, param);
                             break;
                         case 'P':
                             ch = str.charAt(index++);
                             if (ch >= 'a' && ch <= 'z') {
-                                if (exec) {
-                                    dv[ch - 'a'] = stack.pop();
-                                }
+                                compiler.emit(SET_DYNAMIC, ch - 'a');
                             } else if (ch >= 'A' && ch <= 'Z') {
-                                if (exec) {
-                                    sv[ch - 'A'] = stack.pop();
-                                }
+                                compiler.emit(SET_STATIC, ch - 'A');
                             } else {
                                 throw new IllegalArgumentException();
                             }
@@ -150,206 +183,108 @@ public final class Curses {
                         case 'g':
                             ch = str.charAt(index++);
                             if (ch >= 'a' && ch <= 'z') {
-                                if (exec) {
-                                    stack.push(dv[ch - 'a']);
-                                }
+                                compiler.emit(GET_DYNAMIC, ch - 'a');
                             } else if (ch >= 'A' && ch <= 'Z') {
-                                if (exec) {
-                                    stack.push(sv[ch - 'A']);
-                                }
+                                compiler.emit(GET_STATIC, ch - 'A');
                             } else {
                                 throw new IllegalArgumentException();
                             }
                             break;
                         case '\'':
-                            ch = str.charAt(index++);
-                            if (exec) {
-                                stack.push((int) ch);
-                            }
-                            ch = str.charAt(index++);
-                            if (ch != '\'') {
+                            compiler.emit(PUSH_CONSTANT, str.charAt(index++));
+                            if (str.charAt(index++) != '\'') {
                                 throw new IllegalArgumentException();
                             }
                             break;
                         case '{':
                             int start = index;
                             while (str.charAt(index++) != '}');
-                            if (exec) {
-                                int v = Integer.valueOf(str.substring(start, index - 1));
-                                stack.push(v);
-                            }
+                            compiler.emit(PUSH_CONSTANT, Integer.parseInt(str.substring(start, index - 1)));
                             break;
                         case 'l':
-                            if (exec) {
-                                stack.push(stack.pop().toString().length());
-                            }
+                            compiler.emit(LENGTH);
                             break;
                         case '+':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 + v2);
-                            }
+                            compiler.emit(ADD);
                             break;
                         case '-':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 - v2);
-                            }
+                            compiler.emit(SUBTRACT);
                             break;
                         case '*':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 * v2);
-                            }
+                            compiler.emit(MULTIPLY);
                             break;
                         case '/':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 / v2);
-                            }
+                            compiler.emit(DIVIDE);
                             break;
                         case 'm':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 % v2);
-                            }
+                            compiler.emit(MODULO);
                             break;
                         case '&':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 & v2);
-                            }
+                            compiler.emit(BIT_AND);
                             break;
                         case '|':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 | v2);
-                            }
+                            compiler.emit(BIT_OR);
                             break;
                         case '^':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 ^ v2);
-                            }
+                            compiler.emit(BIT_XOR);
                             break;
                         case '=':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 == v2);
-                            }
+                            compiler.emit(EQUAL);
                             break;
                         case '>':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 > v2);
-                            }
+                            compiler.emit(GREATER);
                             break;
                         case '<':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 < v2);
-                            }
+                            compiler.emit(LESS);
                             break;
                         case 'A':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 != 0 && v2 != 0);
-                            }
+                            compiler.emit(AND);
                             break;
                         case '!':
-                            if (exec) {
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 == 0);
-                            }
+                            compiler.emit(NOT);
                             break;
                         case '~':
-                            if (exec) {
-                                int v1 = toInteger(stack.pop());
-                                stack.push(~v1);
-                            }
+                            compiler.emit(BIT_NOT);
                             break;
                         case 'O':
-                            if (exec) {
-                                int v2 = toInteger(stack.pop());
-                                int v1 = toInteger(stack.pop());
-                                stack.push(v1 != 0 || v2 != 0);
-                            }
+                            compiler.emit(OR);
                             break;
                         case '?':
-                            if (ifte != IFTE_NONE) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_IF;
-                            }
+                            compiler.beginIf();
                             break;
                         case 't':
-                            if (ifte != IFTE_IF && ifte != IFTE_ELSE) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_THEN;
-                            }
-                            exec = toInteger(stack.pop()) != 0;
+                            compiler.then();
                             break;
                         case 'e':
-                            if (ifte != IFTE_THEN) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_ELSE;
-                            }
-                            exec = !exec;
+                            compiler.orElse();
                             break;
                         case ';':
-                            if (ifte == IFTE_NONE || ifte == IFTE_IF) {
-                                throw new IllegalArgumentException();
-                            } else {
-                                ifte = IFTE_NONE;
-                            }
-                            exec = true;
+                            compiler.endIf();
                             break;
                         case 'i':
-                            if (params.length >= 1) {
-                                params[0] = toInteger(params[0]) + 1;
-                            }
-                            if (params.length >= 2) {
-                                params[1] = toInteger(params[1]) + 1;
-                            }
+                            compiler.emit(INCREMENT_PARAMS);
                             break;
                         case 'd':
-                            out.write(Integer.toString(toInteger(stack.pop())));
+                            compiler.emit(PRINT_DECIMAL);
                             break;
                         default:
                             throw new UnsupportedOperationException();
                     }
                     break;
                 case '$':
-                    if (str.charAt(index) == '<') {
+                    if (index < length && str.charAt(index) == '<') {
                         // We don't honour delays, just skip
                         while (str.charAt(index++) != '>');
                     } else {
-                        if (exec) {
-                            out.write(ch);
-                        }
+                        compiler.text(ch);
                     }
                     break;
                 default:
-                    if (exec) {
-                        out.write(ch);
-                    }
+                    compiler.text(ch);
                     break;
             }
         }
+        return compiler.program();
     }
 
     private static int toInteger(Object pop) {
@@ -362,4 +297,216 @@ public final class Curses {
         }
     }
 
+    /**
+     * Compiled capability string, immutable.
+     * The code is a list of instructions, each followed by one operand.
+     */
+    private static final class Program {
+        private final int[] code;
+        private final String[] texts;
+        private final int maxStack;
+        private final boolean variables;
+
+        private Program(int[] code, String[] texts, int maxStack, boolean variables) {
+            this.code = code;
+            this.texts = texts;
+            this.maxStack = maxStack;
+            this.variables = variables;
+        }
+
+        private void execute(Writer out, Object[] params) throws IOException {
+            int[] stack = new int[maxStack];
+            int sp = 0;
+            int[] dynamic = variables ? new int[26] : null;
+            int[] statics = variables ? new int[26] : null;
+            // %i increments the first two parameters for this call only
+            int increment = 0;
+            int pc = 0;
+            while (pc < code.length) {
+                int op = code[pc++];
+                int arg = code[pc++];
+                switch (op) {
+                    case TEXT:
+                        out.write(texts[arg]);
+                        break;
+                    case PUSH_PARAM:
+                        stack[sp++] = toInteger(params[arg]) + (arg < 2 ? increment : 0);
+                        break;
+                    case PUSH_PARAM_LENGTH:
+                        if (arg < 2 && increment > 0)
+                            stack[sp++] = Integer.toString(toInteger(params[arg]) + increment).length();
+                        else
+                            stack[sp++] = params[arg].toString().length();
+                        break;
+                    case PUSH_CONSTANT:
+                        stack[sp++] = arg;
+                        break;
+                    case SET_DYNAMIC:
+                        dynamic[arg] = stack[--sp];
+                        break;
+                    case GET_DYNAMIC:
+                        stack[sp++] = dynamic[arg];
+                        break;
+                    case SET_STATIC:
+                        statics[arg] = stack[--sp];
+                        break;
+                    case GET_STATIC:
+                        stack[sp++] = statics[arg];
+                        break;
+                    case LENGTH:
+                        stack[sp - 1] = Integer.toString(stack[sp - 1]).length();
+                        break;
+                    case NOT:
+                        stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                        break;
+                    case BIT_NOT:
+                        stack[sp - 1] = ~stack[sp - 1];
+                        break;
+                    case INCREMENT_PARAMS:
+                        increment++;
+                        break;
+                    case PRINT_DECIMAL:
+                        out.write(Integer.toString(stack[--sp]));
+                        break;
+                    case JUMP:
+                        pc = arg;
+                        break;
+                    case JUMP_IF_FALSE:
+                        if (stack[--sp] == 0)
+                            pc = arg;
+                        break;
+                    default:
+                        int v2 = stack[--sp];
+                        int v1 = stack[sp - 1];
+                        stack[sp - 1] = binary(op, v1, v2);
+                        break;
+                }
+            }
+        }
+
+        private static int binary(int op, int v1, int v2) {
+            switch (op) {
+                case ADD:
+                    return v1 + v2;
+                case SUBTRACT:
+                    return v1 - v2;
+                case MULTIPLY:
+                    return v1 * v2;
+                case DIVIDE:
+                    return v1 / v2;
+                case MODULO:
+                    return v1 % v2;
+                case BIT_AND:
+                    return v1 & v2;
+                case BIT_OR:
+                    return v1 | v2;
+                case BIT_XOR:
+                    return v1 ^ v2;
+                case EQUAL:
+                    return v1 == v2 ? 1 : 0;
+                case GREATER:
+                    return v1 > v2 ? 1 : 0;
+                case LESS:
+                    return v1 < v2 ? 1 : 0;
+                case AND:
+                    return v1 != 0 && v2 != 0 ? 1 : 0;
+                case OR:
+                    return v1 != 0 || v2 != 0 ? 1 : 0;
+                default:
+                    throw new IllegalStateException("Unknown instruction " + op);
+            }
+        }
+    }
+
+    private static final class Compiler {
+        private int[] code = new int[32];
+        private int size;
+        private final List<String> texts = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int maxStack;
+        private boolean variables;
+        // open %? conditionals
+        private final Deque<Conditional> conditionals = new ArrayDeque<>();
+
+        private void text(int ch) {
+            text.append((char) ch);
+        }
+
+        private void emit(int op) {
+            emit(op, 0);
+        }
+
+        private void emit(int op, int arg) {
+            flushText();
+            append(op, arg);
+            if (op == GET_DYNAMIC || op == GET_STATIC || op == SET_DYNAMIC || op == SET_STATIC)
+                variables = true;
+            // counting every push is an upper bound of the stack depth
+            if (op == PUSH_PARAM || op == PUSH_PARAM_LENGTH || op == PUSH_CONSTANT || op == GET_DYNAMIC || op == GET_STATIC)
+                maxStack++;
+        }
+
+        private void append(int op, int arg) {
+            if (size + 2 > code.length)
+                code = Arrays.copyOf(code, code.length * 2);
+            code[size++] = op;
+            code[size++] = arg;
+        }
+
+        private void flushText() {
+            if (text.length() > 0) {
+                append(TEXT, texts.size());
+                texts.add(text.toString());
+                text.setLength(0);
+            }
+        }
+
+        private void beginIf() {
+            flushText();
+            conditionals.push(new Conditional());
+        }
+
+        private void then() {
+            Conditional conditional = conditionals.peek();
+            if (conditional == null || conditional.pendingFalse >= 0)
+                throw new IllegalArgumentException();
+            emit(JUMP_IF_FALSE, -1);
+            conditional.pendingFalse = size - 1;
+        }
+
+        private void orElse() {
+            Conditional conditional = conditionals.peek();
+            if (conditional == null || conditional.pendingFalse < 0)
+                throw new IllegalArgumentException();
+            emit(JUMP, -1);
+            conditional.pendingEnd.add(size - 1);
+            code[conditional.pendingFalse] = size;
+            conditional.pendingFalse = -1;
+        }
+
+        private void endIf() {
+            Conditional conditional = conditionals.poll();
+            if (conditional == null || (conditional.pendingFalse < 0 && conditional.pendingEnd.isEmpty()))
+                throw new IllegalArgumentException();
+            flushText();
+            if (conditional.pendingFalse >= 0)
+                code[conditional.pendingFalse] = size;
+            for (int jump : conditional.pendingEnd)
+                code[jump] = size;
+        }
+
+        private Program program() {
+            if (!conditionals.isEmpty())
+                throw new IllegalArgumentException();
+            flushText();
+            return new Program(Arrays.copyOf(code, size), texts.toArray(new String[0]), maxStack, variables);
+        }
+    }
+
+    private static final class Conditional {
+        // operand of the jump taken when the condition is false
+        private int pendingFalse = -1;
+        // operands of the jumps to the end of the conditional
+        private final List<Integer> pendingEnd = new ArrayList<>();
+    }
 }
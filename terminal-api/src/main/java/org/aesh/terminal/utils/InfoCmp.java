@@ -24,9 +24,9 @@ import org.aesh.terminal.tty.Capability;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,16 +37,31 @@ import java.util.regex.Pattern;
  */
 public final class InfoCmp {
 
-    private static final Map<String, String> CAPS = new HashMap<>();
+    private static final Map<String, String> CAPS = new ConcurrentHashMap<>();
+    // a backslash escape the next character, so an escaped comma is part of the value
+    // while the comma after an escaped backslash (\\,) end it
+    private static final Pattern CAPABILITY = Pattern.compile("\\s*((\\\\.|[^\\\\,])+)\\s*[,$]");
 
     private InfoCmp() {
     }
 
+    /**
+     * The capabilities are read from the compiled terminfo database, infocmp is only
+     * started if no entry could be read. The result is cached for the process.
+     */
     public static String getInfoCmp( String terminal ) throws IOException, InterruptedException {
         String caps = CAPS.get(terminal);
         if (caps == null) {
-            Process p = new ProcessBuilder(OSUtils.INFOCMP_COMMAND, terminal).start();
-            caps = ExecHelper.waitAndCapture(p);
+            try {
+                caps = TerminfoReader.read(terminal);
+            }
+            catch (IOException e) {
+                // invalid entry, let infocmp have a go
+            }
+            if (caps == null) {
+                Process p = new ProcessBuilder(OSUtils.INFOCMP_COMMAND, terminal).start();
+                caps = ExecHelper.waitAndCapture(p);
+            }
             CAPS.put(terminal, caps);
         }
         return caps;
@@ -100,13 +115,15 @@ public final class InfoCmp {
 
         String[] lines = capabilities.split("\n");
         for (int i = 1; i < lines.length; i++) {
-            Matcher m = Pattern.compile("\\s*(([^,]|\\\\,)+)\\s*[,$]").matcher(lines[i]);
+            Matcher m = CAPABILITY.matcher(lines[i]);
             while (m.find()) {
                 String cap = m.group(1);
-                if (cap.contains("#")) {
-                    int index = cap.indexOf('#');
-                    String key = cap.substring(0, index);
-                    String val = cap.substring(index + 1);
+                // string values may contain '#'
+                int hash = cap.indexOf('#');
+                int equals = cap.indexOf('=');
+                if (hash >= 0 && (equals < 0 || hash < equals)) {
+                    String key = cap.substring(0, hash);
+                    String val = cap.substring(hash + 1);
                     int iVal = val.startsWith("0x") ?
                             Integer.parseInt(val.substring(2), 16) :
                             Integer.parseInt(val);
@@ -114,10 +131,9 @@ public final class InfoCmp {
                     if (c != null) {
                         ints.put(c, iVal);
                     }
-                } else if (cap.contains("=")) {
-                    int index = cap.indexOf('=');
-                    String key = cap.substring(0, index);
-                    String val = cap.substring(index + 1);
+                } else if (equals >= 0) {
+                    String key = cap.substring(0, equals);
+                    String val = cap.substring(equals + 1);
                     Capability c = Capability.byName(key);
                     if (c != null) {
                         strings.put(c, val);
@@ -0,0 +1,371 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.terminal.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reader for the compiled terminfo database.
+ *
+ * The entries are read directly from the terminfo directories and converted to the
+ * text format printed by infocmp, so they can be given to {@link InfoCmp#parseInfoCmp},
+ * without having to start an infocmp process.
+ * Both the legacy format (16 bit numbers) and the extended number format (32 bit numbers)
+ * are supported, including the extended (user defined) capabilities.
+ */
+public final class TerminfoReader {
+
+    private static final int MAGIC_LEGACY = 0432;
+    private static final int MAGIC_32BIT = 01036;
+
+    // the capability names in the order they are stored in the compiled entries
+    private static final String[] BOOLEAN_NAMES = {
+            "bw", "am", "xsb", "xhp", "xenl", "eo", "gn", "hc", "km", "hs", "in", "da", "db", "mir", "msgr",
+            "os", "eslok", "xt", "hz", "ul", "xon", "nxon", "mc5i", "chts", "nrrmc", "npc", "ndscr", "ccc",
+            "bce", "hls", "xhpa", "crxm", "daisy", "xvpa", "sam", "cpix", "lpix"
+    };
+
+    private static final String[] NUMBER_NAMES = {
+            "cols", "it", "lines", "lm", "xmc", "pb", "vt", "wsl", "nlab", "lh", "lw", "ma", "wnum", "colors",
+            "pairs", "ncv", "bufsz", "spinv", "spinh", "maddr", "mjump", "mcs", "mls", "npins", "orc", "orl",
+            "orhi", "orvi", "cps", "widcs", "btns", "bitwin", "bitype"
+    };
+
+    private static final String[] STRING_NAMES = {
+            "cbt", "bel", "cr", "csr", "tbc", "clear", "el", "ed", "hpa", "cmdch", "cup", "cud1", "home",
+            "civis", "cub1", "mrcup", "cnorm", "cuf1", "ll", "cuu1", "cvvis", "dch1", "dl1", "dsl", "hd",
+            "smacs", "blink", "bold", "smcup", "smdc", "dim", "smir", "invis", "prot", "rev", "smso", "smul",
+            "ech", "rmacs", "sgr0", "rmcup", "rmdc", "rmir", "rmso", "rmul", "flash", "ff", "fsl", "is1",
+            "is2", "is3", "if", "ich1", "il1", "ip", "kbs", "ktbc", "kclr", "kctab", "kdch1", "kdl1", "kcud1",
+            "krmir", "kel", "ked", "kf0", "kf1", "kf10", "kf2", "kf3", "kf4", "kf5", "kf6", "kf7", "kf8",
+            "kf9", "khome", "kich1", "kil1", "kcub1", "kll", "knp", "kpp", "kcuf1", "kind", "kri", "khts",
+            "kcuu1", "rmkx", "smkx", "lf0", "lf1", "lf10", "lf2", "lf3", "lf4", "lf5", "lf6", "lf7", "lf8",
+            "lf9", "rmm", "smm", "nel", "pad", "dch", "dl", "cud", "ich", "indn", "il", "cub", "cuf", "rin",
+            "cuu", "pfkey", "pfloc", "pfx", "mc0", "mc4", "mc5", "rep", "rs1", "rs2", "rs3", "rf", "rc",
+            "vpa", "sc", "ind", "ri", "sgr", "hts", "wind", "ht", "tsl", "uc", "hu", "iprog", "ka1", "ka3",
+            "kb2", "kc1", "kc3", "mc5p", "rmp", "acsc", "pln", "kcbt", "smxon", "rmxon", "smam", "rmam",
+            "xonc", "xoffc", "enacs", "smln", "rmln", "kbeg", "kcan", "kclo", "kcmd", "kcpy", "kcrt", "kend",
+            "kent", "kext", "kfnd", "khlp", "kmrk", "kmsg", "kmov", "knxt", "kopn", "kopt", "kprv", "kprt",
+            "krdo", "kref", "krfr", "krpl", "krst", "kres", "ksav", "kspd", "kund", "kBEG", "kCAN", "kCMD",
+            "kCPY", "kCRT", "kDC", "kDL", "kslt", "kEND", "kEOL", "kEXT", "kFND", "kHLP", "kHOM", "kIC",
+            "kLFT", "kMSG", "kMOV", "kNXT", "kOPT", "kPRV", "kPRT", "kRDO", "kRPL", "kRIT", "kRES", "kSAV",
+            "kSPD", "kUND", "rfi", "kf11", "kf12", "kf13", "kf14", "kf15", "kf16", "kf17", "kf18", "kf19",
+            "kf20", "kf21", "kf22", "kf23", "kf24", "kf25", "kf26", "kf27", "kf28", "kf29", "kf30", "kf31",
+            "kf32", "kf33", "kf34", "kf35", "kf36", "kf37", "kf38", "kf39", "kf40", "kf41", "kf42", "kf43",
+            "kf44", "kf45", "kf46", "kf47", "kf48", "kf49", "kf50", "kf51", "kf52", "kf53", "kf54", "kf55",
+            "kf56", "kf57", "kf58", "kf59", "kf60", "kf61", "kf62", "kf63", "el1", "mgc", "smgl", "smgr",
+            "fln", "sclk", "dclk", "rmclk", "cwin", "wingo", "hup", "dial", "qdial", "tone", "pulse", "hook",
+            "pause", "wait", "u0", "u1", "u2", "u3", "u4", "u5", "u6", "u7", "u8", "u9", "op", "oc", "initc",
+            "initp", "scp", "setf", "setb", "cpi", "lpi", "chr", "cvr", "defc", "swidm", "sdrfq", "sitm",
+            "slm", "smicm", "snlq", "snrmq", "sshm", "ssubm", "ssupm", "sum", "rwidm", "ritm", "rlm", "rmicm",
+            "rshm", "rsubm", "rsupm", "rum", "mhpa", "mcud1", "mcub1", "mcuf1", "mvpa", "mcuu1", "porder",
+            "mcud", "mcub", "mcuf", "mcuu", "scs", "smgb", "smgbp", "smglp", "smgrp", "smgt", "smgtp", "sbim",
+            "scsd", "rbim", "rcsd", "subcs", "supcs", "docr", "zerom", "csnm", "kmous", "minfo", "reqmp",
+            "getm", "setaf", "setab", "pfxl", "devt", "csin", "s0ds", "s1ds", "s2ds", "s3ds", "smglr",
+            "smgtb", "birep", "binel", "bicr", "colornm", "defbi", "endbi", "setcolor", "slines", "dispc",
+            "smpch", "rmpch", "smsc", "rmsc", "pctrm", "scesc", "scesa", "ehhlm", "elhlm", "elohlm", "erhlm",
+            "ethlm", "evhlm", "sgr1", "slength"
+    };
+
+    private TerminfoReader() {
+    }
+
+    /**
+     * Read the compiled terminfo entry of the given terminal type from the
+     * standard terminfo directories.
+     *
+     * @param terminal terminal type, eg. xterm-256color
+     * @return the capabilities in infocmp format, or null if no entry is found
+     * @throws IOException if the entry could not be read or is not valid
+     */
+    public static String read(String terminal) throws IOException {
+        return read(terminal, directories());
+    }
+
+    static String read(String terminal, List<File> directories) throws IOException {
+        if(terminal == null || terminal.isEmpty() || terminal.contains("/") || terminal.contains(".."))
+            return null;
+        for(File directory : directories) {
+            File file = find(directory, terminal);
+            if(file != null)
+                return parse(Files.readAllBytes(file.toPath()));
+        }
+        return null;
+    }
+
+    /**
+     * Same search order as ncurses: $TERMINFO, ~/.terminfo, $TERMINFO_DIRS and then
+     * the system directories.
+     */
+    private static List<File> directories() {
+        List<File> directories = new ArrayList<>();
+        String terminfo = System.getenv("TERMINFO");
+        if(terminfo != null && !terminfo.isEmpty())
+            directories.add(new File(terminfo));
+        String home = System.getProperty("user.home");
+        if(home != null)
+            directories.add(new File(home, ".terminfo"));
+        String dirs = System.getenv("TERMINFO_DIRS");
+        if(dirs != null) {
+            for(String dir : dirs.split(File.pathSeparator))
+                if(!dir.isEmpty())
+                    directories.add(new File(dir));
+        }
+        directories.add(new File("/etc/terminfo"));
+        directories.add(new File("/lib/terminfo"));
+        directories.add(new File("/usr/share/terminfo"));
+        directories.add(new File("/usr/lib/terminfo"));
+        directories.add(new File("/usr/share/lib/terminfo"));
+        return directories;
+    }
+
+    private static File find(File directory, String terminal) {
+        char first = terminal.charAt(0);
+        // most systems use the first character as sub directory, some (eg. OSX) its hex value
+        File file = new File(new File(directory, String.valueOf(first)), terminal);
+        if(file.isFile())
+            return file;
+        file = new File(new File(directory, Integer.toHexString(first)), terminal);
+        if(file.isFile())
+            return file;
+        return null;
+    }
+
+    /**
+     * Convert a compiled terminfo entry to infocmp format.
+     *
+     * @param data the compiled entry
+     * @return the capabilities in infocmp format
+     * @throws IOException if the entry is not valid
+     */
+    static String parse(byte[] data) throws IOException {
+        try {
+            return new Entry(data).toInfoCmp();
+        }
+        catch(IndexOutOfBoundsException e) {
+            throw new IOException("Truncated terminfo entry", e);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] data;
+        private int position;
+        private final int numberSize;
+        // sorted by name like infocmp, Capability.byName resolve some names ambiguously
+        private final Map<String, String> booleanValues = new TreeMap<>();
+        private final Map<String, String> numberValues = new TreeMap<>();
+        private final Map<String, String> stringValues = new TreeMap<>();
+
+        private Entry(byte[] data) throws IOException {
+            this.data = data;
+            int magic = readShort();
+            if(magic == MAGIC_LEGACY)
+                numberSize = 2;
+            else if(magic == MAGIC_32BIT)
+                numberSize = 4;
+            else
+                throw new IOException("Not a compiled terminfo entry, magic: 0" + Integer.toOctalString(magic));
+        }
+
+        private String toInfoCmp() throws IOException {
+            int namesSize = readShort();
+            int booleanCount = readShort();
+            int numberCount = readShort();
+            int stringCount = readShort();
+            int tableSize = readShort();
+            if(namesSize < 0 || booleanCount < 0 || numberCount < 0 || stringCount < 0 || tableSize < 0)
+                throw new IOException("Invalid terminfo header");
+
+            String names = string(position, position + namesSize);
+            position += namesSize;
+
+            int booleans = position;
+            position += booleanCount;
+            align();
+            int numbers = position;
+            position += numberCount * numberSize;
+            int offsets = position;
+            position += stringCount * 2;
+            int table = position;
+            position += tableSize;
+
+            for(int i = 0; i < booleanCount && i < BOOLEAN_NAMES.length; i++)
+                if(data[booleans + i] == 1)
+                    appendBoolean(BOOLEAN_NAMES[i]);
+            for(int i = 0; i < numberCount && i < NUMBER_NAMES.length; i++)
+                appendNumber(NUMBER_NAMES[i], number(numbers + i * numberSize));
+            for(int i = 0; i < stringCount && i < STRING_NAMES.length; i++)
+                appendString(STRING_NAMES[i], short16(offsets + i * 2), table, table + tableSize);
+
+            align();
+            if(position + 10 <= data.length)
+                readExtended();
+
+            StringBuilder builder = new StringBuilder();
+            builder.append("#\tReconstructed from compiled terminfo\n");
+            builder.append(names).append(",\n");
+            for(String capability : booleanValues.values())
+                builder.append('\t').append(capability).append(",\n");
+            for(String capability : numberValues.values())
+                builder.append('\t').append(capability).append(",\n");
+            for(String capability : stringValues.values())
+                builder.append('\t').append(capability).append(",\n");
+            return builder.toString();
+        }
+
+        /**
+         * The extended section, the names are stored after the string values
+         */
+        private void readExtended() throws IOException {
+            int booleanCount = readShort();
+            int numberCount = readShort();
+            int stringCount = readShort();
+            // number of strings stored in the table, absent values are not counted
+            readShort();
+            int tableSize = readShort();
+            if(booleanCount < 0 || numberCount < 0 || stringCount < 0 || tableSize < 0)
+                throw new IOException("Invalid extended terminfo header");
+            // an offset for each string value followed by an offset for each name
+            int offsetCount = stringCount + booleanCount + numberCount + stringCount;
+
+            int booleans = position;
+            position += booleanCount;
+            align();
+            int numbers = position;
+            position += numberCount * numberSize;
+            int offsets = position;
+            position += offsetCount * 2;
+            int table = position;
+            int tableEnd = table + tableSize;
+            position = tableEnd;
+
+            // the names follow the last string value
+            int names = table;
+            for(int i = 0; i < stringCount; i++) {
+                int offset = short16(offsets + i * 2);
+                if(offset >= 0)
+                    names = Math.max(names, end(table + offset, tableEnd) + 1);
+            }
+            int name = offsets + stringCount * 2;
+            for(int i = 0; i < booleanCount; i++, name += 2)
+                if(data[booleans + i] == 1)
+                    appendBoolean(name(names, name, tableEnd));
+            for(int i = 0; i < numberCount; i++, name += 2)
+                appendNumber(name(names, name, tableEnd), number(numbers + i * numberSize));
+            for(int i = 0; i < stringCount; i++, name += 2)
+                appendString(name(names, name, tableEnd), short16(offsets + i * 2), table, tableEnd);
+        }
+
+        private String name(int names, int offset, int tableEnd) {
+            int start = names + short16(offset);
+            return string(start, end(start, tableEnd));
+        }
+
+        private void appendBoolean(String name) {
+            booleanValues.put(name, name);
+        }
+
+        private void appendNumber(String name, int value) {
+            // negative values are absent or cancelled capabilities
+            if(value >= 0)
+                numberValues.put(name, name + '#' + value);
+        }
+
+        private void appendString(String name, int offset, int table, int tableEnd) {
+            if(offset < 0)
+                return;
+            StringBuilder builder = new StringBuilder(name).append('=');
+            int end = end(table + offset, tableEnd);
+            for(int i = table + offset; i < end; i++)
+                appendEscaped(builder, data[i] & 0xFF, i == table + offset);
+            stringValues.put(name, builder.toString());
+        }
+
+        /**
+         * Escape the value the same way infocmp do, characters that could be misread
+         * by the parsers are written as octal.
+         */
+        private static void appendEscaped(StringBuilder builder, int c, boolean first) {
+            if(c == 27)
+                builder.append("\\E");
+            else if(c == '\\')
+                builder.append("\\\\");
+            else if(c == ' ' && first)
+                builder.append("\\s");
+            else if(c < 32)
+                builder.append('^').append((char) (c + '@'));
+            else if(c == ',' || c == '^' || c == '#' || c >= 127) {
+                builder.append('\\');
+                String octal = Integer.toOctalString(c);
+                for(int i = octal.length(); i < 3; i++)
+                    builder.append('0');
+                builder.append(octal);
+            }
+            else
+                builder.append((char) c);
+        }
+
+        private int end(int start, int limit) {
+            int end = start;
+            while(end < limit && data[end] != 0)
+                end++;
+            return end;
+        }
+
+        private String string(int start, int end) {
+            int length = end - start;
+            // the size include the terminating null
+            if(length > 0 && data[end - 1] == 0)
+                length--;
+            return new String(data, start, length, StandardCharsets.ISO_8859_1);
+        }
+
+        private int number(int offset) {
+            if(numberSize == 2)
+                return short16(offset);
+            return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 |
+                    (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+        }
+
+        private int short16(int offset) {
+            if(offset + 1 >= data.length)
+                throw new IndexOutOfBoundsException("Offset: " + offset);
+            return (short) ((data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8);
+        }
+
+        private int readShort() {
+            int value = short16(position);
+            position += 2;
+            return value;
+        }
+
+        private void align() {
+            if((position & 1) != 0)
+                position++;
+        }
+    }
+}
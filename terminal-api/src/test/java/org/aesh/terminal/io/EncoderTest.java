@@ -21,10 +21,18 @@ package org.aesh.terminal.io;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author <a href="mailto:stale.pedersen@jboss.org">Ståle W. Pedersen</a>
@@ -60,4 +68,106 @@ public class EncoderTest {
         decodeEndcode("foo bar!!??", new String[] {"foo ","bar!","!??"});
         decodeEndcode("\r", new String[] {"\r"});
     }
+
+    @Test
+    public void testSameBytesAsCharset() {
+        String[] inputs = {"", "foo bar", "bl\u00e5b\u00e6r", "\u4e2d\u6587 \ud83d\ude00!", "\u001b[1;32mok"};
+        Charset[] charsets = {StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1,
+                StandardCharsets.UTF_16LE, Charset.forName("windows-1252")};
+        for(Charset charset : charsets) {
+            for(String input : inputs) {
+                ByteBuffer expectedBuffer = charset.encode(input);
+                byte[] expected = Arrays.copyOf(expectedBuffer.array(), expectedBuffer.limit());
+                int[] codePoints = input.codePoints().toArray();
+
+                List<byte[]> result = new ArrayList<>();
+                new Encoder(charset, result::add).accept(codePoints);
+                assertArrayEquals(charset + " " + input, expected, result.get(0));
+
+                List<byte[]> ranges = new ArrayList<>();
+                new Encoder(charset, (bytes, offset, length) ->
+                        ranges.add(Arrays.copyOfRange(bytes, offset, offset + length))).accept(codePoints);
+                assertArrayEquals(charset + " " + input, expected, ranges.get(0));
+            }
+        }
+    }
+
+    @Test
+    public void testRangeBufferIsReused() {
+        List<byte[]> buffers = new ArrayList<>();
+        List<String> output = new ArrayList<>();
+        Encoder encoder = new Encoder(StandardCharsets.UTF_8, (bytes, offset, length) -> {
+            buffers.add(bytes);
+            output.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+        });
+        encoder.accept("foo".codePoints().toArray());
+        encoder.accept("\u00e6\u00f8\u00e5".codePoints().toArray());
+        encoder.setCharset(StandardCharsets.UTF_16BE);
+        encoder.accept("bar".codePoints().toArray());
+
+        assertEquals(Arrays.asList("foo", "\u00e6\u00f8\u00e5", "\u0000b\u0000a\u0000r"), output);
+        assertSame(buffers.get(0), buffers.get(1));
+        assertSame(buffers.get(0), buffers.get(2));
+    }
+
+    @Test
+    public void testWriteText() {
+        String[] inputs = {"", "foo\nbar\n", "bl\u00e5b\u00e6r", "\u4e2d\u6587 \ud83d\ude00!\n", "\u001b[1;32mok"};
+        Charset[] charsets = {StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1,
+                StandardCharsets.UTF_16BE, Charset.forName("windows-1252")};
+        for(Charset charset : charsets) {
+            for(String input : inputs) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new Encoder(charset, (bytes, offset, length) -> out.write(bytes, offset, length)).write(new StringBuilder(input), false);
+                assertArrayEquals(charset + " " + input, bytes(charset.encode(input)), out.toByteArray());
+
+                out.reset();
+                new Encoder(charset, (bytes, offset, length) -> out.write(bytes, offset, length)).write(input, true);
+                String translated = input.replace("\n", "\r\n");
+                assertArrayEquals(charset + " " + input, bytes(charset.encode(translated)), out.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testWriteInChunks() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 5000; i++)
+            text.append("line ").append(i).append(" \u00e6\ud83d\ude00\n");
+        for(Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16LE}) {
+            List<Integer> chunks = new ArrayList<>();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new Encoder(charset, (bytes, offset, length) -> {
+                chunks.add(length);
+                out.write(bytes, offset, length);
+            }).write(text, true);
+
+            assertArrayEquals(bytes(charset.encode(text.toString().replace("\n", "\r\n"))), out.toByteArray());
+            assertTrue(chunks.size() > 1);
+            for(int length : chunks)
+                assertTrue(length <= Encoder.CHUNK_SIZE + 8);
+        }
+    }
+
+    @Test
+    public void testWriteBytes() {
+        byte[] data = new byte[20000];
+        for(int i = 0; i < data.length; i++)
+            data[i] = (byte) (i % 10 == 9 ? '\n' : 'a' + i % 10);
+        List<byte[]> result = new ArrayList<>();
+        Encoder encoder = new Encoder(StandardCharsets.UTF_8, result::add);
+        encoder.writeBytes(ByteBuffer.wrap(data), false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.forEach(bytes -> out.write(bytes, 0, bytes.length));
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(3, result.size());
+
+        result.clear();
+        encoder.writeBytes(ByteBuffer.wrap("foo\nbar\n".getBytes(StandardCharsets.US_ASCII)), true);
+        assertEquals("foo\r\nbar\r\n", new String(result.get(0), StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
 }
@@ -19,12 +19,16 @@
  */
 package org.aesh.terminal.tty;
 
+import org.aesh.terminal.Attributes;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -40,6 +44,39 @@ public class TtyOutputModeTest {
     assertOutput("a\r\nb\r\nc", "a\nb\nc");
   }
 
+  @Test
+  public void testOneCallPerWrite() {
+    List<int[]> calls = new ArrayList<>();
+    TtyOutputMode out = new TtyOutputMode(calls::add);
+    out.accept(toCodePoints("a\nb\n\nc\n"));
+    assertEquals(1, calls.size());
+    assertEquals("a\r\nb\r\n\r\nc\r\n", fromCodePoints(calls.get(0)));
+  }
+
+  @Test
+  public void testOnlcr() {
+    Attributes attributes = new Attributes();
+    List<int[]> calls = new ArrayList<>();
+    TtyOutputMode out = new TtyOutputMode(calls::add, () -> attributes);
+    out.accept(toCodePoints("a\nb"));
+    attributes.setOutputFlag(Attributes.OutputFlag.OPOST, true);
+    attributes.setOutputFlag(Attributes.OutputFlag.ONLCR, true);
+    out.accept(toCodePoints("a\nb"));
+    assertEquals("a\nb", fromCodePoints(calls.get(0)));
+    assertEquals("a\r\nb", fromCodePoints(calls.get(1)));
+  }
+
+  @Test
+  public void testOnlcrWithoutOpost() {
+    Attributes attributes = new Attributes();
+    attributes.setOutputFlag(Attributes.OutputFlag.ONLCR, true);
+    List<int[]> calls = new ArrayList<>();
+    TtyOutputMode out = new TtyOutputMode(calls::add, () -> attributes);
+    assertFalse(out.translatesNewLines());
+    out.accept(toCodePoints("a\nb"));
+    assertEquals("a\nb", fromCodePoints(calls.get(0)));
+  }
+
   private void assertOutput(String expected, String actual) {
     Stream.Builder<int[]> builder = Stream.<int[]>builder();
     TtyOutputMode out = new TtyOutputMode(builder);
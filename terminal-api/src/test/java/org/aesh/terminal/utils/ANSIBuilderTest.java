@@ -19,10 +19,17 @@
  */
 package org.aesh.terminal.utils;
 
+import org.aesh.terminal.io.Encoder;
 import org.aesh.terminal.utils.ANSIBuilder.TextType;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.aesh.terminal.utils.ANSIBuilder.Color.*;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -61,4 +68,52 @@ public class ANSIBuilderTest {
         builder = ANSIBuilder.builder(false);
         assertEquals("FOO BAR", builder.bold("FOO").append(' ').blackBg("BAR").toString());
     }
+
+    @Test
+    public void testMergeStyleChanges() {
+        ANSIBuilder builder = ANSIBuilder.builder();
+        assertEquals(COLOR_START+"1;"+ RED.text()+";"+ BLUE.bg()+"mFOO BAR"+RESET,
+                builder.greenText().bold().redText().blueBg().append("FOO")
+                        .yellowText().redText().append(" BAR").toString());
+
+        builder.clear();
+        assertEquals(COLOR_START+"0;"+ RED.text()+";"+ DEFAULT.bg()+"mFOO"+
+                        COLOR_START+"0;1;"+ BLUE.text()+";"+ DEFAULT.bg()+"mBAR"+RESET,
+                builder.redText("FOO").bold().blueText("BAR").toString());
+
+        builder.clear();
+        assertEquals(COLOR_START+"0;"+ RED.text()+";"+ DEFAULT.bg()+"mFOOBAR"+RESET,
+                builder.redText("FOO").redText("BAR").toString());
+
+        builder.clear();
+        assertEquals(COLOR_START+"0;"+ RED.text()+";"+ DEFAULT.bg()+"mFOO"+RESET+
+                        Config.getLineSeparator()+"BAR",
+                builder.redText("FOO").newline().append("BAR").toString());
+    }
+
+    @Test
+    public void testReuse() {
+        ANSIBuilder builder = ANSIBuilder.builder();
+        String first = builder.redText("FOO").toString();
+        builder.clear();
+        assertEquals(first, builder.redText("FOO").toString());
+        builder.clear();
+        assertEquals("BAR", builder.append("BAR").toString());
+    }
+
+    @Test
+    public void testWriteToSinks() {
+        ANSIBuilder builder = ANSIBuilder.builder().greenText("bl\u00e5 \ud83d\ude00");
+        String expected = COLOR_START+"0;"+ GREEN.text()+";"+ DEFAULT.bg()+"mbl\u00e5 \ud83d\ude00"+RESET;
+
+        assertArrayEquals(expected.codePoints().toArray(), builder.toCodePoints());
+
+        List<int[]> codePoints = new ArrayList<>();
+        builder.writeTo(codePoints::add);
+        assertArrayEquals(expected.codePoints().toArray(), codePoints.get(0));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.writeTo(new Encoder(StandardCharsets.UTF_8, (bytes, offset, length) -> out.write(bytes, offset, length)));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
 }
@@ -22,6 +22,9 @@ package org.aesh.terminal.utils;
 import org.junit.Test;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 
@@ -37,6 +40,64 @@ public class CursesTest {
 
     }
 
+    @Test
+    public void testParamsNotModified() throws Exception {
+        Object[] params = {2, 3};
+        assertEquals("\033[3;4r", tputs("\\E[%i%p1%d;%p2%dr", params));
+        assertEquals("\033[3;4r", tputs("\\E[%i%p1%d;%p2%dr", params));
+        assertEquals(2, params[0]);
+        assertEquals(3, params[1]);
+    }
+
+    @Test
+    public void testConditionals() throws Exception {
+        String setaf = "\\E[%?%p1%{8}%<%t3%p1%d%e%p1%{16}%<%t9%p1%{8}%-%d%e38;5;%p1%d%;m";
+        assertEquals("\033[31m", tputs(setaf, 1));
+        assertEquals("\033[94m", tputs(setaf, 12));
+        assertEquals("\033[38;5;200m", tputs(setaf, 200));
+
+        assertEquals("ab", tputs("a%?%p1%tb%;", 1));
+        assertEquals("a", tputs("a%?%p1%tb%;", 0));
+        assertEquals("x2y", tputs("x%p1%{1}%+%Pa%?%ga%{2}%=%t2%;y", 1));
+    }
+
+    @Test
+    public void testEscapes() throws Exception {
+        assertEquals("\033\r\n^:", tputs("\\e\\r\\n\\^\\:"));
+        assertEquals("\001\033", tputs("^A\\033"));
+        assertEquals("a", tputs("a$<5>"));
+        assertEquals("3", tputs("%p1%l%d", "foo"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnbalancedConditional() throws Exception {
+        tputs("%?%p1%tfoo");
+    }
+
+    @Test
+    public void testConcurrentTputs() throws Exception {
+        String cup = "\\E[%i%p1%d;%p2%dH";
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for(int i = 0; i < 1000; i++) {
+                        if(!tputs(cup, i, i + 1).equals("\033[" + (i + 1) + ";" + (i + 2) + "H"))
+                            failures.incrementAndGet();
+                    }
+                }
+                catch(Exception e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for(Thread thread : threads)
+            thread.join();
+        assertEquals(0, failures.get());
+    }
+
     private String tputs(String cap, Object... params) throws Exception {
         StringWriter sw = new StringWriter();
         Curses.tputs(sw, cap, params);
@@ -0,0 +1,214 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aesh.terminal.utils;
+
+import org.aesh.terminal.tty.Capability;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TerminfoReaderTest {
+
+    @Test
+    public void testLegacyFormat() throws IOException {
+        String infocmp = TerminfoReader.parse(entry(false));
+        assertTrue(infocmp.contains("test|test terminal,\n"));
+
+        Set<Capability> bools = new HashSet<>();
+        Map<Capability, Integer> ints = new HashMap<>();
+        Map<Capability, String> strings = new HashMap<>();
+        InfoCmp.parseInfoCmp(infocmp, bools, ints, strings);
+
+        assertEquals(Collections.singleton(Capability.auto_right_margin), bools);
+        assertEquals(80, ints.get(Capability.columns).intValue());
+        assertEquals(24, ints.get(Capability.lines).intValue());
+        assertEquals(2, ints.size());
+        // absent and cancelled strings are skipped
+        assertEquals(3, strings.size());
+        assertEquals("^G", strings.get(Capability.bell));
+        assertEquals("\\E[%i%p1%d;%p2%dH", strings.get(Capability.cursor_address));
+        assertEquals("a\\054\\043\\136b", strings.get(Capability.change_scroll_region));
+
+        StringWriter sw = new StringWriter();
+        Curses.tputs(sw, strings.get(Capability.cursor_address), 4, 9);
+        assertEquals("\u001b[5;10H", sw.toString());
+        sw = new StringWriter();
+        Curses.tputs(sw, strings.get(Capability.change_scroll_region));
+        assertEquals("a,#^b", sw.toString());
+    }
+
+    @Test
+    public void testExtendedFormat() throws IOException {
+        String infocmp = TerminfoReader.parse(entry(true));
+
+        Map<Capability, Integer> ints = new HashMap<>();
+        InfoCmp.parseInfoCmp(infocmp, new HashSet<>(), ints, new HashMap<>());
+        assertEquals(0x1000000, ints.get(Capability.max_colors).intValue());
+
+        assertTrue(infocmp.contains("\tXT,\n"));
+        assertTrue(infocmp.contains("\tU8#1,\n"));
+        assertTrue(infocmp.contains("\tSs=\\E[%p1%d q,\n"));
+    }
+
+    @Test
+    public void testEscapedBackslashEndValue() {
+        // infocmp style output of a value that end with a backslash, as written by TerminfoReader
+        String infocmp = "test|test terminal,\n" +
+                "\tinitc=\\E]4;%p1%d;rgb\\:%p2%d\\E\\\\, kb2=\\EOE,\n" +
+                "\tcsr=a\\,b\\\\\\,c, am,\n";
+        Set<Capability> bools = new HashSet<>();
+        Map<Capability, String> strings = new HashMap<>();
+        InfoCmp.parseInfoCmp(infocmp, bools, new HashMap<>(), strings);
+
+        assertEquals(3, strings.size());
+        assertEquals("\\E]4;%p1%d;rgb\\:%p2%d\\E\\\\", strings.get(Capability.initialize_color));
+        assertEquals("\\EOE", strings.get(Capability.key_b2));
+        assertEquals("a\\,b\\\\\\,c", strings.get(Capability.change_scroll_region));
+        assertEquals(Collections.singleton(Capability.auto_right_margin), bools);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidEntry() throws IOException {
+        TerminfoReader.parse("not a terminfo entry".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedEntry() throws IOException {
+        byte[] entry = entry(false);
+        byte[] truncated = new byte[entry.length / 2];
+        System.arraycopy(entry, 0, truncated, 0, truncated.length);
+        TerminfoReader.parse(truncated);
+    }
+
+    @Test
+    public void testDirectories() throws IOException {
+        Path root = Files.createTempDirectory("aesh-terminfo");
+        try {
+            File hex = new File(root.toFile(), "74");
+            assertTrue(hex.mkdir());
+            Files.write(new File(hex, "test").toPath(), entry(false));
+
+            assertTrue(TerminfoReader.read("test", Collections.singletonList(root.toFile())).startsWith("#"));
+            assertNull(TerminfoReader.read("unknown", Collections.singletonList(root.toFile())));
+            assertNull(TerminfoReader.read("../t/test", Collections.singletonList(root.toFile())));
+        }
+        finally {
+            new File(new File(root.toFile(), "74"), "test").delete();
+            new File(root.toFile(), "74").delete();
+            root.toFile().delete();
+        }
+    }
+
+    /**
+     * A compiled entry with am, cols, lines, bel, cup and csr, the extended entry use
+     * 32 bit numbers and have extended capabilities
+     */
+    private static byte[] entry(boolean extended) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] names = "test|test terminal\0".getBytes(StandardCharsets.US_ASCII);
+        String[] values = {null, "\u0007", "", "a,#^b", null, null, null, null, null, null,
+                "\u001b[%i%p1%d;%p2%dH"};
+        int[] numbers = extended ? new int[]{80, -1, 24, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0x1000000}
+                : new int[]{80, -1, 24};
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        short[] offsets = strings(values, table);
+        // the cancelled cr
+        offsets[2] = -2;
+
+        writeShort(out, extended ? 01036 : 0432);
+        writeShort(out, names.length);
+        writeShort(out, 2);
+        writeShort(out, numbers.length);
+        writeShort(out, offsets.length);
+        writeShort(out, table.size());
+        out.write(names, 0, names.length);
+        out.write(0);
+        out.write(1);
+        if(out.size() % 2 != 0)
+            out.write(0);
+        for(int number : numbers)
+            writeNumber(out, number, extended);
+        for(short offset : offsets)
+            writeShort(out, offset);
+        out.write(table.toByteArray(), 0, table.size());
+        if(extended) {
+            if(out.size() % 2 != 0)
+                out.write(0);
+            ByteArrayOutputStream extendedTable = new ByteArrayOutputStream();
+            short[] valueOffsets = strings(new String[]{"\u001b[%p1%d q"}, extendedTable);
+            int namesStart = extendedTable.size();
+            short[] nameOffsets = strings(new String[]{"XT", "U8", "Ss"}, extendedTable);
+            writeShort(out, 1);
+            writeShort(out, 1);
+            writeShort(out, 1);
+            writeShort(out, 4);
+            writeShort(out, extendedTable.size());
+            out.write(1);
+            out.write(0);
+            writeNumber(out, 1, true);
+            writeShort(out, valueOffsets[0]);
+            for(short offset : nameOffsets)
+                writeShort(out, offset - namesStart);
+            out.write(extendedTable.toByteArray(), 0, extendedTable.size());
+        }
+        return out.toByteArray();
+    }
+
+    private static short[] strings(String[] values, ByteArrayOutputStream table) {
+        short[] offsets = new short[values.length];
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] == null)
+                offsets[i] = -1;
+            else {
+                offsets[i] = (short) table.size();
+                byte[] bytes = values[i].getBytes(StandardCharsets.ISO_8859_1);
+                table.write(bytes, 0, bytes.length);
+                table.write(0);
+            }
+        }
+        return offsets;
+    }
+
+    private static void writeNumber(ByteArrayOutputStream out, int value, boolean wide) {
+        writeShort(out, value);
+        if(wide)
+            writeShort(out, value >> 16);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
@@ -32,6 +32,7 @@ import org.aesh.terminal.tty.Size;
 import org.aesh.terminal.tty.TtyOutputMode;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
@@ -69,7 +70,8 @@ public abstract class HttpTtyConnection implements Connection {
     private Consumer<Size> sizeHandler;
     private final EventDecoder eventDecoder;
     private final Decoder decoder;
-    private final Consumer<int[]> stdout;
+    private final Encoder encoder;
+    private final TtyOutputMode stdout;
     private Consumer<Void> closeHandler;
     private Consumer<String> termHandler;
     private long lastAccessedTime = System.currentTimeMillis();
@@ -84,10 +86,13 @@ public abstract class HttpTtyConnection implements Connection {
         this.size = size;
         this.eventDecoder = new EventDecoder(3, 4, 26);
         this.decoder = new Decoder(512, charset, eventDecoder);
-        this.stdout = new TtyOutputMode(new Encoder(charset, this::write));
+        this.encoder = new Encoder(charset, this::write);
+        this.stdout = new TtyOutputMode(encoder, this::getAttributes);
 
         this.device = new HttpDevice("vt100");
         attributes = new Attributes();
+        attributes.setOutputFlag(Attributes.OutputFlag.OPOST, true);
+        attributes.setOutputFlag(Attributes.OutputFlag.ONLCR, true);
     }
 
     @Override
@@ -195,6 +200,18 @@ public abstract class HttpTtyConnection implements Connection {
         return stdout;
     }
 
+    @Override
+    public Connection write(CharSequence s) {
+        encoder.write(s, stdout.translatesNewLines());
+        return this;
+    }
+
+    @Override
+    public Connection writeBytes(ByteBuffer bytes) {
+        encoder.writeBytes(bytes, stdout.translatesNewLines());
+        return this;
+    }
+
     @Override
     public void setCloseHandler(Consumer<Void> closeHandler) {
         this.closeHandler = closeHandler;
@@ -46,6 +46,9 @@ public class SSHAttributesBuilder {
 
     public Attributes build() {
         Attributes attr = new Attributes();
+        // translate \n to \r\n unless the client turn it off
+        attr.setOutputFlag(Attributes.OutputFlag.OPOST, true);
+        attr.setOutputFlag(Attributes.OutputFlag.ONLCR, true);
         for (Map.Entry<PtyMode, Integer> e : environment.getPtyModes().entrySet()) {
             switch (e.getKey()) {
                 case VINTR:
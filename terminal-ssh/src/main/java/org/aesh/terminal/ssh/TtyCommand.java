@@ -45,6 +45,7 @@ import org.apache.sshd.server.channel.ChannelSession;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.EnumSet;
 import java.util.concurrent.TimeUnit;
@@ -65,7 +66,8 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
     private Charset charset;
     private EventDecoder eventDecoder;
     private Decoder decoder;
-    private Consumer<int[]> stdout;
+    private Encoder encoder;
+    private TtyOutputMode stdout;
     private Consumer<byte[]> out;
     private Size size = null;
     private Consumer<Size> sizeHandler;
@@ -168,7 +170,8 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
         attributes = SSHAttributesBuilder.builder().environment(env).build();
         eventDecoder = new EventDecoder(attributes);
         decoder = new Decoder(512, charset, eventDecoder);
-        stdout = new TtyOutputMode(new Encoder(charset, out));
+        encoder = new Encoder(charset, out);
+        stdout = new TtyOutputMode(encoder, () -> attributes);
         conn = new SSHConnection();
 
         session.setDataReceiver(this);
@@ -312,6 +315,18 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
             return stdout;
         }
 
+        @Override
+        public Connection write(CharSequence s) {
+            encoder.write(s, stdout.translatesNewLines());
+            return this;
+        }
+
+        @Override
+        public Connection writeBytes(ByteBuffer bytes) {
+            encoder.writeBytes(bytes, stdout.translatesNewLines());
+            return this;
+        }
+
         @Override
         public void setCloseHandler(Consumer<Void> handler) {
             closeHandler = handler;
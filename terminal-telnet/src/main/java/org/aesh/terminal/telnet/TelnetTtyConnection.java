@@ -31,6 +31,7 @@ import org.aesh.terminal.tty.Signal;
 import org.aesh.terminal.tty.Size;
 import org.aesh.terminal.tty.TtyOutputMode;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
@@ -58,7 +59,7 @@ public final class TelnetTtyConnection extends TelnetHandler implements Connecti
   private final ReadBuffer readBuffer = new ReadBuffer(this::execute);
   private final Decoder decoder = new Decoder(512, TelnetCharset.INSTANCE, readBuffer);
   private final Encoder encoder = new Encoder(StandardCharsets.US_ASCII, data -> conn.write(data));
-  private final Consumer<int[]> stdout = new TtyOutputMode(encoder);
+  private final TtyOutputMode stdout = new TtyOutputMode(encoder, this::getAttributes);
   private final Consumer<Connection> handler;
   private long lastAccessedTime = System.currentTimeMillis();
   private Device device;
@@ -152,6 +153,8 @@ public final class TelnetTtyConnection extends TelnetHandler implements Connecti
     conn.writeDoOption(Option.TERMINAL_TYPE);
 
     attributes = new Attributes();
+    attributes.setOutputFlag(Attributes.OutputFlag.OPOST, true);
+    attributes.setOutputFlag(Attributes.OutputFlag.ONLCR, true);
 
     //
     checkAccept();
@@ -233,6 +236,18 @@ public final class TelnetTtyConnection extends TelnetHandler implements Connecti
     return stdout;
   }
 
+  @Override
+  public Connection write(CharSequence s) {
+    encoder.write(s, stdout.translatesNewLines());
+    return this;
+  }
+
+  @Override
+  public Connection writeBytes(ByteBuffer bytes) {
+    encoder.writeBytes(bytes, stdout.translatesNewLines());
+    return this;
+  }
+
   @Override
   public void setCloseHandler(Consumer<Void> closeHandler) {
     this.closeHandler = closeHandler;